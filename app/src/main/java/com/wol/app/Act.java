@@ -7,4 +7,13 @@ package com.wol.app;
 public interface Act 
 {
     void enterRoom(Room r);
+
+    /**
+     * Act as the given character entering a room. Acts that depend on who
+     * acts, such as trading, override this.
+     */
+    default void enterRoom(CharacterState self, Room r)
+    {
+        enterRoom(r);
+    }
 };
@@ -0,0 +1,319 @@
+package com.wol.app;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An output sink writing to a channel on a thread of its own. <br/>
+ *
+ * Messages are encoded as UTF-8 into the current one of a fixed pool of
+ * buffers; a full buffer is handed to the writer thread and the next free
+ * one taken. flush() only asks the writer to take the current buffer as
+ * well, so the game goes on while the output is written. Whatever piled
+ * up while the writer was busy is written at once, with one gathering
+ * write where the channel supports it, so a slow console or socket gets
+ * fewer, larger writes rather than holding up the game.
+ *
+ * The pool bounds the output in flight: once every buffer is waiting to
+ * be written, writing blocks until the writer frees one. A failure to
+ * write is thrown as an UncheckedIOException by the next call.
+ */
+public class AsyncOutput implements OutputSink
+{
+    // Buffers in the pool by default.
+    public static final int BUFFERS = 8;
+    // Bytes per buffer by default.
+    public static final int CAPACITY = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition work  = lock.newCondition(); // signalled when there is output to write
+    private final Condition space = lock.newCondition(); // signalled when buffers are freed
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> full = new ArrayDeque<>();
+    private final Thread writer;
+    private final int buffers;
+    private ByteBuffer current;
+    private boolean flushing; // the writer is to take the current buffer
+    private boolean writing;  // the writer is writing a batch
+    private boolean closed;
+    private IOException failure;
+    private long writes;      // batches written
+    private long bytes;       // bytes written
+
+    /**
+     * Create a sink with the default pool, see AsyncOutput(channel, buffers, capacity).
+     */
+    public AsyncOutput(WritableByteChannel channel)
+    {
+        this(channel, BUFFERS, CAPACITY);
+    }
+
+    /**
+     * Create a sink writing to a channel, and start its writer.
+     *
+     * @param channel  The channel written to, closed when the sink is.
+     * @param buffers  The buffers in the pool.
+     * @param capacity The bytes per buffer.
+     *
+     * Pre-condition: channel is not null, buffers is at least 2 and
+     * capacity at least 8.
+     */
+    public AsyncOutput(WritableByteChannel channel, int buffers, int capacity)
+    {
+        assert channel != null : "AsyncOutput.AsyncOutput has null channel";
+        assert buffers >= 2 : "AsyncOutput.AsyncOutput has too few buffers";
+        assert capacity >= 8 : "AsyncOutput.AsyncOutput has too small buffers";
+        this.channel = channel;
+        this.buffers = buffers;
+        for (int i = 1; i < buffers; i++) {
+            free.add(ByteBuffer.allocate(capacity));
+        }
+        current = ByteBuffer.allocate(capacity);
+        writer = new Thread(this::run, "output");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Encode a message into the buffers, waiting for a free buffer when
+     * all are full.
+     *
+     * @throws UncheckedIOException if earlier output could not be written.
+     */
+    public void write(CharSequence message)
+    {
+        assert message != null : "AsyncOutput.write has null message";
+        CharBuffer in = CharBuffer.wrap(message);
+        lock.lock();
+        try {
+            check();
+            while (encoder.encode(in, current, true) == CoderResult.OVERFLOW) {
+                if (free.isEmpty()) {
+                    // Wait for the writer, which may take the current buffer meanwhile.
+                    work.signal();
+                    space.awaitUninterruptibly();
+                    check();
+                } else {
+                    full.add(current);
+                    current = free.poll();
+                    work.signal();
+                }
+            }
+            encoder.reset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Have the writer write everything written so far, without waiting.
+     *
+     * @throws UncheckedIOException if earlier output could not be written.
+     */
+    public void flush()
+    {
+        lock.lock();
+        try {
+            check();
+            flushing = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until everything written so far has been written to the channel.
+     *
+     * @throws UncheckedIOException if output could not be written.
+     */
+    public void drain()
+    {
+        lock.lock();
+        try {
+            flushing = true;
+            work.signal();
+            while ((writing || flushing || !full.isEmpty()) && failure == null) {
+                space.awaitUninterruptibly();
+            }
+            check();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write everything written so far, stop the writer and close the channel.
+     *
+     * @throws IOException if output could not be written or the channel
+     * could not be closed.
+     */
+    public void close() throws IOException
+    {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushing = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Return the number of writes to the channel so far.
+     */
+    public long getWrites()
+    {
+        lock.lock();
+        try {
+            return writes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the number of bytes written to the channel so far.
+     */
+    public long getBytes()
+    {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Throw the failure of the writer, if any. Must hold the lock.
+     */
+    private void check()
+    {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("AsyncOutput is closed");
+        }
+    }
+
+    /**
+     * The writer: take the full buffers, and the current one when flushing,
+     * and write them in one go until the sink is closed.
+     */
+    private void run()
+    {
+        ByteBuffer[] batch = new ByteBuffer[buffers];
+        lock.lock();
+        try {
+            while (true) {
+                if (flushing && current.position() == 0) {
+                    flushing = false;
+                    space.signalAll();
+                }
+                if (full.isEmpty() && !flushing) {
+                    if (closed) {
+                        return;
+                    }
+                    work.awaitUninterruptibly();
+                    continue;
+                }
+                int size = 0;
+                while (!full.isEmpty()) {
+                    batch[size++] = full.poll();
+                }
+                if (flushing && !free.isEmpty()) {
+                    batch[size++] = current;
+                    current = free.poll();
+                    flushing = false;
+                }
+                for (int i = 0; i < size; i++) {
+                    batch[i].flip();
+                }
+                writing = true;
+                lock.unlock();
+                long written = 0;
+                IOException error = null;
+                try {
+                    written = write(batch, size);
+                } catch (IOException e) {
+                    error = e;
+                }
+                lock.lock();
+                writing = false;
+                if (error != null && failure == null) {
+                    failure = error;
+                }
+                writes++;
+                bytes += written;
+                for (int i = 0; i < size; i++) {
+                    batch[i].clear();
+                    free.add(batch[i]);
+                    batch[i] = null;
+                }
+                if (failure != null) {
+                    // Nothing more can be written; let everyone waiting see the failure.
+                    free.addAll(full);
+                    full.clear();
+                    current.clear();
+                    flushing = false;
+                }
+                space.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write the first size buffers to the channel and return the bytes written.
+     */
+    private long write(ByteBuffer[] batch, int size) throws IOException
+    {
+        long written = 0;
+        if (channel instanceof GatheringByteChannel) {
+            int first = 0;
+            while (first < size) {
+                written += ((GatheringByteChannel) channel).write(batch, first, size - first);
+                while (first < size && !batch[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                while (batch[i].hasRemaining()) {
+                    written += channel.write(batch[i]);
+                }
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,28 @@
+package com.wol.app;
+/**
+ * How a character chooses where to go when the clock advances.
+ *
+ * Behaviours are asked for all characters of a game in turn, on the
+ * thread ticking the game, before any character moves, so they must only
+ * read the game: each sees the rooms as they were at the start of the
+ * tick. They are cheapest when they look up distances found beforehand,
+ * see Behaviours.
+ */
+@FunctionalInterface
+public interface Behaviour
+{
+    // Returned to leave the choice to the next behaviour of a pipeline.
+    int PASS = -2;
+
+    /**
+     * Choose the room a character moves to.
+     *
+     * @param world  The world of the game.
+     * @param self   The character choosing.
+     * @param player The player, whose room may matter.
+     * @param bits   Random bits drawn for this character and tick.
+     * @return The room, which must be reached through an exit of the
+     *         character's room; World.NO_ROOM to stay; or PASS.
+     */
+    int choose(World world, CharacterState self, CharacterState player, long bits);
+}
@@ -0,0 +1,297 @@
+package com.wol.app;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Behaviours and acts for characters, and a profile to measure them. <br/>
+ *
+ * Behaviours that head somewhere look up distances found when they are
+ * made: seek() follows the distances of all rooms to its room, follow()
+ * and flee() use the distance oracle of the world. Choosing a room then
+ * costs a look at the exits of one room, without searching the world or
+ * allocating. A behaviour made for a world may be shared by all games on
+ * that world. Behaviours are combined with first(), which asks each in
+ * turn until one does not pass.
+ */
+public class Behaviours
+{
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Stays where it is.
+     */
+    public static final Behaviour STAY = (world, self, player, bits) -> World.NO_ROOM;
+
+    /**
+     * Trades one item with the first character in the room entered that
+     * has an item the trader lacks and lacks an item the trader has.
+     */
+    public static final Act TRADE = new Act()
+    {
+        public void enterRoom(Room r)
+        {
+            // There is no one to trade for.
+        }
+
+        public void enterRoom(CharacterState self, Room r)
+        {
+            r.trade(self);
+        }
+    };
+
+    private Behaviours()
+    {
+    }
+
+    /**
+     * Return a behaviour taking a random exit as often as the character's
+     * move probability says.
+     */
+    public static Behaviour wander(Character c)
+    {
+        assert c != null : "Behaviours.wander has null character";
+        return (world, self, player, bits) -> c.automove((bits >>> 11) * 0x1.0p-53)
+            ? World.NO_ROOM : world.randomExit(self.getRoom().getId(), TickScheduler.mix(bits));
+    }
+
+    /**
+     * Return a behaviour heading for a room along a shortest way, passing
+     * once there or if there is no way.
+     *
+     * Pre-condition: world is not null and room is a room of world.
+     */
+    public static Behaviour seek(World world, int room)
+    {
+        assert world != null : "Behaviours.seek has null world";
+        final int[] distances = world.distances().distancesTo(room);
+        return (w, self, player, bits) -> {
+            assert w == world : "Behaviours.seek asked for another world";
+            int here = self.getRoom().getId();
+            int best = Behaviour.PASS;
+            int bestDistance = distances[here];
+            for (Direction direction : DIRECTIONS) {
+                int exit = w.getExit(here, direction);
+                if (exit != World.NO_ROOM && distances[exit] < bestDistance) {
+                    best = exit;
+                    bestDistance = distances[exit];
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Return a behaviour heading for the player's room, staying once there.
+     * It passes if no exit seems to lead closer: on worlds too large for a
+     * table of all distances, distances to the player are estimated.
+     *
+     * Pre-condition: world is not null.
+     */
+    public static Behaviour follow(World world)
+    {
+        assert world != null : "Behaviours.follow has null world";
+        final DistanceOracle oracle = world.distances();
+        return (w, self, player, bits) -> {
+            assert w == world : "Behaviours.follow asked for another world";
+            if (player == null || player.getRoom() == null) {
+                return Behaviour.PASS;
+            }
+            int target = player.getRoom().getId();
+            int here = self.getRoom().getId();
+            if (here == target) {
+                return World.NO_ROOM;
+            }
+            int best = Behaviour.PASS;
+            int bestDistance = oracle.lowerBound(here, target);
+            for (Direction direction : DIRECTIONS) {
+                int exit = w.getExit(here, direction);
+                if (exit != World.NO_ROOM && oracle.lowerBound(exit, target) < bestDistance) {
+                    best = exit;
+                    bestDistance = oracle.lowerBound(exit, target);
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Return a behaviour moving away from the player while the player can
+     * reach it within the given number of moves, and passing otherwise.
+     *
+     * Pre-condition: world is not null.
+     */
+    public static Behaviour flee(World world, int range)
+    {
+        assert world != null : "Behaviours.flee has null world";
+        final DistanceOracle oracle = world.distances();
+        return (w, self, player, bits) -> {
+            assert w == world : "Behaviours.flee asked for another world";
+            if (player == null || player.getRoom() == null) {
+                return Behaviour.PASS;
+            }
+            int from = player.getRoom().getId();
+            int here = self.getRoom().getId();
+            int bestDistance = oracle.lowerBound(from, here);
+            if (bestDistance > range) {
+                return Behaviour.PASS;
+            }
+            int best = Behaviour.PASS;
+            for (Direction direction : DIRECTIONS) {
+                int exit = w.getExit(here, direction);
+                if (exit != World.NO_ROOM && oracle.lowerBound(from, exit) > bestDistance) {
+                    best = exit;
+                    bestDistance = oracle.lowerBound(from, exit);
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Return a behaviour asking the given ones in turn and choosing what
+     * the first that does not pass chooses.
+     *
+     * Pre-condition: behaviours are not null.
+     */
+    public static Behaviour first(Behaviour... behaviours)
+    {
+        final Behaviour[] pipeline = behaviours.clone();
+        return (world, self, player, bits) -> {
+            for (Behaviour behaviour : pipeline) {
+                int room = behaviour.choose(world, self, player, bits);
+                if (room != Behaviour.PASS) {
+                    return room;
+                }
+            }
+            return Behaviour.PASS;
+        };
+    }
+
+    /**
+     * Counts the calls of the behaviours and acts wrapped by it and the
+     * time spent in them. Behaviours and acts that are not wrapped cost
+     * nothing extra.
+     */
+    public static class Profile
+    {
+        private final List<Entry> entries = new ArrayList<>();
+
+        /**
+         * The calls and time of one wrapped behaviour or act.
+         */
+        private static class Entry
+        {
+            final String name;
+            final LongAdder calls = new LongAdder();
+            final LongAdder nanos = new LongAdder();
+
+            Entry(String name)
+            {
+                this.name = name;
+            }
+
+            void add(long start)
+            {
+                nanos.add(System.nanoTime() - start);
+                calls.increment();
+            }
+        }
+
+        /**
+         * Return an entry for the given name, adding it if it is new.
+         */
+        private synchronized Entry entry(String name)
+        {
+            for (Entry entry : entries) {
+                if (entry.name.equals(name)) {
+                    return entry;
+                }
+            }
+            Entry entry = new Entry(name);
+            entries.add(entry);
+            return entry;
+        }
+
+        /**
+         * Return a behaviour doing what the given one does and counted under
+         * the given name.
+         */
+        public Behaviour wrap(String name, Behaviour behaviour)
+        {
+            final Entry entry = entry(name);
+            return (world, self, player, bits) -> {
+                long start = System.nanoTime();
+                try {
+                    return behaviour.choose(world, self, player, bits);
+                } finally {
+                    entry.add(start);
+                }
+            };
+        }
+
+        /**
+         * Return an act doing what the given one does and counted under the
+         * given name.
+         */
+        public Act wrap(String name, Act act)
+        {
+            final Entry entry = entry(name);
+            return new Act()
+            {
+                public void enterRoom(Room r)
+                {
+                    long start = System.nanoTime();
+                    try {
+                        act.enterRoom(r);
+                    } finally {
+                        entry.add(start);
+                    }
+                }
+
+                public void enterRoom(CharacterState self, Room r)
+                {
+                    long start = System.nanoTime();
+                    try {
+                        act.enterRoom(self, r);
+                    } finally {
+                        entry.add(start);
+                    }
+                }
+            };
+        }
+
+        /**
+         * Return the number of calls counted under a name.
+         */
+        public long getCalls(String name)
+        {
+            return entry(name).calls.sum();
+        }
+
+        /**
+         * Return the nanoseconds spent in calls counted under a name.
+         */
+        public long getNanos(String name)
+        {
+            return entry(name).nanos.sum();
+        }
+
+        /**
+         * Return a table of the calls, the total time and the time per call
+         * of each name.
+         */
+        public synchronized String toString()
+        {
+            StringBuilder result = new StringBuilder(String.format("%-16s %12s %12s %10s",
+                "Behaviour", "Calls", "Total ms", "ns/call"));
+            for (Entry entry : entries) {
+                long calls = entry.calls.sum();
+                long nanos = entry.nanos.sum();
+                result.append(String.format("%n%-16s %12d %12.3f %10.1f", entry.name, calls,
+                    nanos / 1e6, calls == 0 ? 0.0 : (double) nanos / calls));
+            }
+            return result.toString();
+        }
+    }
+}
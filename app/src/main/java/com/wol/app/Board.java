@@ -0,0 +1,230 @@
+package com.wol.app;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+/**
+ * The world of one game together with the characters placed in it.
+ *
+ * A board keeps no state per room: the characters in a room are found by
+ * looking at the rooms of the few characters of the game, so a game on a
+ * world of millions of rooms costs no more memory than one on London.
+ * Rooms are handed out as thin views holding the board and a room number.
+ * The views of the last rooms handed out are kept by room number modulo
+ * a small constant and handed out again, so characters moving about the
+ * same rooms allocate no views.
+ *
+ * The board also holds the random source of its game, so that games never
+ * contend for a shared one and a game played from the same seed is
+ * reproduced exactly.
+ *
+ * The long descriptions of the last rooms described are cached, so that
+ * looking around does not render them again. A room's entry is dropped
+ * when its exits change, a character enters or leaves it or a character
+ * in it gains or loses an item.
+ */
+class Board
+{
+    private final World world;
+    // The characters of the game, by ordinal; null if not in the world.
+    private final CharacterState[] characters;
+    private final SplittableRandom random;
+    // Long descriptions by room number modulo DESCRIBED, and the rooms they describe.
+    private static final int DESCRIBED = 16;
+    private final int[] describedRooms = new int[DESCRIBED];
+    private final String[] descriptions = new String[DESCRIBED];
+    // Views of rooms by room number modulo VIEWS.
+    private static final int VIEWS = 64;
+    private final Room[] views = new Room[VIEWS];
+    // Reused for rendering descriptions.
+    private final StringBuilder renderer = new StringBuilder(256);
+    // Records the changes to the board, may be null.
+    private EventLog log;
+    // How each character chooses where to go and acts, by ordinal.
+    private final Behaviour[] behaviours;
+    private final Act[] acts;
+
+    /**
+     * Create an empty board over the given world.
+     *
+     * Pre-condition: neither world nor random are null.
+     */
+    Board(World world, SplittableRandom random)
+    {
+        assert world != null : "Board.Board has null world";
+        assert random != null : "Board.Board has null random";
+        this.world  = world;
+        this.random = random;
+        characters = new CharacterState[Character.count()];
+        behaviours = new Behaviour[Character.count()];
+        acts       = new Act[Character.count()];
+        for (Character c : Character.values()) {
+            behaviours[c.ordinal()] = c.getBehaviour();
+            acts[c.ordinal()]       = c.getAct();
+        }
+        Arrays.fill(describedRooms, World.NO_ROOM);
+    }
+
+    /**
+     * Return the random source of the board's game.
+     */
+    SplittableRandom getRandom()
+    {
+        return random;
+    }
+
+    /**
+     * Return the world of the board.
+     */
+    World getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * Return the characters of the board, by ordinal.
+     */
+    CharacterState[] getCharacters()
+    {
+        return characters;
+    }
+
+    /**
+     * Return how a character chooses where to go, by ordinal.
+     */
+    Behaviour getBehaviour(int character)
+    {
+        return behaviours[character];
+    }
+
+    /**
+     * Set how a character chooses where to go, by ordinal.
+     */
+    void setBehaviour(int character, Behaviour behaviour)
+    {
+        behaviours[character] = behaviour;
+    }
+
+    /**
+     * Return the act of a character entering a room, by ordinal.
+     */
+    Act getAct(int character)
+    {
+        return acts[character];
+    }
+
+    /**
+     * Set the act of a character entering a room, by ordinal.
+     */
+    void setAct(int character, Act act)
+    {
+        acts[character] = act;
+    }
+
+    /**
+     * Return a view of the given room.
+     *
+     * Pre-condition: 0 <= room < getWorld().size().
+     */
+    Room room(int room)
+    {
+        int slot = room & (VIEWS - 1);
+        Room view = views[slot];
+        if (view == null || view.getId() != room) {
+            view = new Room(this, room);
+            views[slot] = view;
+        }
+        return view;
+    }
+
+    /**
+     * Return the mask of characters in the given room, see Character.bit().
+     */
+    int occupants(int room)
+    {
+        int mask = 0;
+        for (CharacterState c : characters) {
+            if (c != null && c.getRoom() != null && c.getRoom().getId() == room) {
+                mask |= c.getCharacter().bit();
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Return the cached long description of a room, or null if there is none.
+     */
+    String getDescription(int room)
+    {
+        int slot = room & (DESCRIBED - 1);
+        return describedRooms[slot] == room ? descriptions[slot] : null;
+    }
+
+    /**
+     * Cache the long description of a room.
+     */
+    void setDescription(int room, String description)
+    {
+        int slot = room & (DESCRIBED - 1);
+        describedRooms[slot] = room;
+        descriptions[slot]   = description;
+    }
+
+    /**
+     * Drop the cached long description of a room.
+     */
+    void invalidate(int room)
+    {
+        int slot = room & (DESCRIBED - 1);
+        if (describedRooms[slot] == room) {
+            describedRooms[slot] = World.NO_ROOM;
+            descriptions[slot]   = null;
+        }
+    }
+
+    /**
+     * Return the board's empty builder for rendering descriptions.
+     */
+    StringBuilder renderer()
+    {
+        renderer.setLength(0);
+        return renderer;
+    }
+
+    /**
+     * Record the changes to the board in the given log, or stop recording if null.
+     */
+    void setEventLog(EventLog log)
+    {
+        this.log = log;
+    }
+
+    /**
+     * Record an event if the board is being recorded, see EventLog.
+     */
+    void record(int type, int character, int value)
+    {
+        if (log != null) {
+            log.append(EventLog.event(type, character, value));
+        }
+    }
+
+    /**
+     * Write the events recorded so far if the board is being recorded, see EventLog.
+     */
+    void sync()
+    {
+        if (log != null) {
+            log.sync();
+        }
+    }
+
+    /**
+     * Take a snapshot if the board is being recorded, after a change that
+     * is not made of events, see EventLog.
+     */
+    void checkpoint()
+    {
+        if (log != null) {
+            log.checkpoint();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.wol.app;
+import java.util.SplittableRandom;
+
+/**
+ * A synthetic player choosing the commands of a game, see Bots.
+ */
+@FunctionalInterface
+public interface Bot
+{
+    /**
+     * Return the next command to issue in a game.
+     *
+     * @param game   The game played, not finished.
+     * @param random The random source of the session.
+     * @return The command, or null to stop playing the game.
+     */
+    Command next(Game game, SplittableRandom random);
+}
@@ -0,0 +1,123 @@
+package com.wol.app;
+
+/**
+ * Bots playing the game through Commands. <br/>
+ *
+ * The bots keep no state between commands, so one bot may play any
+ * number of games at once. They look at the game through its public
+ * methods and find their way with the distance oracle of its world.
+ */
+public class Bots
+{
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Item[] ITEMS = Item.values();
+    private static final Character[] CHARACTERS = Character.values();
+    // The items the item collector aims to eat.
+    private static final int MEAL = Item.mask(Item.SANDWICH, Item.DRINK, Item.CRISPS);
+
+    /**
+     * Goes through a random exit of the player's room, or looks if there is none.
+     */
+    public static final Bot RANDOM_WALKER = (game, random) -> {
+        int here = game.getCharacterState(Character.PLAYER).getRoom().getId();
+        Direction chosen = null;
+        int exits = 0;
+        for (Direction direction : DIRECTIONS) {
+            if (game.getWorld().getExit(here, direction) != World.NO_ROOM && random.nextInt(++exits) == 0) {
+                chosen = direction;
+            }
+        }
+        return chosen == null ? Commands.look() : Commands.go(chosen);
+    };
+
+    /**
+     * Goes along a shortest way to the goal, and walks at random if there is none.
+     */
+    public static final Bot GOAL_SEEKER = (game, random) -> {
+        Direction direction = towardsGoal(game);
+        return direction == null ? RANDOM_WALKER.next(game, random) : Commands.go(direction);
+    };
+
+    /**
+     * Takes the items of a meal from the characters it meets and eats
+     * them, heading for the nearest character holding an item it lacks,
+     * and for the goal once no such character can be reached.
+     */
+    public static final Bot ITEM_COLLECTOR = (game, random) -> {
+        CharacterState player = game.getCharacterState(Character.PLAYER);
+        int lacking = MEAL & ~player.getItems();
+        if (lacking == 0) {
+            return Commands.eat();
+        }
+        int here = player.getRoom().getId();
+        DistanceOracle oracle = game.getWorld().distances();
+        int target = World.NO_ROOM;
+        int nearest = DistanceOracle.UNREACHABLE;
+        for (Character c : CHARACTERS) {
+            CharacterState state = game.getCharacterState(c);
+            if (c == Character.PLAYER || state == null || state.getRoom() == null
+                || (state.getItems() & lacking) == 0) {
+                continue;
+            }
+            int room = state.getRoom().getId();
+            if (room == here) {
+                return Commands.take(ITEMS[Integer.numberOfTrailingZeros(state.getItems() & lacking)]);
+            }
+            int distance = oracle.distance(here, room);
+            if (distance < nearest) {
+                nearest = distance;
+                target = room;
+            }
+        }
+        if (target != World.NO_ROOM) {
+            for (Direction direction : DIRECTIONS) {
+                int exit = game.getWorld().getExit(here, direction);
+                if (exit != World.NO_ROOM && oracle.distance(exit, target) == nearest - 1) {
+                    return Commands.go(direction);
+                }
+            }
+        }
+        return GOAL_SEEKER.next(game, random);
+    };
+
+    private Bots()
+    {
+    }
+
+    /**
+     * Return the direction of a shortest way from the player's room to
+     * the goal, or null if there is none.
+     */
+    private static Direction towardsGoal(Game game)
+    {
+        World world = game.getWorld();
+        DistanceOracle oracle = world.distances();
+        int here = game.getCharacterState(Character.PLAYER).getRoom().getId();
+        int distance = oracle.toGoal(here);
+        if (distance == DistanceOracle.UNREACHABLE) {
+            return null;
+        }
+        for (Direction direction : DIRECTIONS) {
+            int exit = world.getExit(here, direction);
+            if (exit != World.NO_ROOM && oracle.toGoal(exit) == distance - 1) {
+                return direction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the bot of the given name: "random", "goal" or "collector".
+     *
+     * @throws IllegalArgumentException if there is no bot of that name.
+     */
+    public static Bot named(String name)
+    {
+        switch (name) {
+            case "random":    return RANDOM_WALKER;
+            case "goal":      return GOAL_SEEKER;
+            case "collector": return ITEM_COLLECTOR;
+            default: throw new IllegalArgumentException("No bot named " + name);
+        }
+    }
+}
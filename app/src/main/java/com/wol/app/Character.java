@@ -1,11 +1,11 @@
 package com.wol.app;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.stream.*;
-
 /**
  * Enumeration class Character
  * A character in the game.
+ * 
+ * A character only holds immutable metadata, and may be shared freely by
+ * games. Where it is and what it carries within a game is kept in that
+ * game's CharacterState.
  */
 public enum Character
 {
@@ -15,89 +15,83 @@ public enum Character
     ALEX("Alex"  , null         , 0.5, r -> {}),
     PLAYER("The player (Me)"      , null, 0.0, r -> {}),
     // The CookieMonster takes crisps from everyone in the room if they are available.
-    COOKIE_MONSTER("CookieMonster", null, 1.0, r -> r.getChars().forEach(c -> c.take(Item.CRISPS))),
+    COOKIE_MONSTER("CookieMonster", null, 1.0, r -> r.forEachCharacter(c -> c.take(Item.CRISPS))),
     // The CrispGiver gives crisps to everyone in the room.
-    CRISP_GIVER("CrispGiver"      , null, 1.0, r -> r.getChars().forEach(c -> c.receive(Item.CRISPS)));
+    CRISP_GIVER("CrispGiver"      , null, 1.0, r -> r.forEachCharacter(c -> c.receive(Item.CRISPS)));
     
-    private String description;
+    private final String description;
     // Characters actions
-    private Act act;
+    private final Act act;
     // Characters move probability
     private final double moveProbability;
-    // Characters items inventory
-    private Set<Item> itemList;
+    // Characters starting item, may be null
+    private final Item item;
+    // Characters default choice of where to go
+    private final Behaviour behaviour;
+    
+    private static final int COUNT = values().length;
     
     /**
      * Constructor initialising description and item.
      */
     private Character(String desc, Item it, double moveProb, Act enterRoom)
     {
-        itemList = new HashSet<>();
-        itemList.add(it);
+        item            = it;
         act             = enterRoom;
         description     = desc;
         moveProbability = moveProb;
+        behaviour       = moveProb > 0 ? Behaviours.wander(this) : Behaviours.STAY;
     }
     
     /**
-     * Return the description and description of item if it exists.
+     * Return the description.
      */
     public String toString()
     {
-        itemList.remove(null);
-        
-        if (itemList.isEmpty()) {
-            return description;
-        } else {
-            String items = itemList.stream()
-                .map(Item::toString)
-                .collect(Collectors.joining(", "));
-            
-            return description + " having the item[s]: " + items;
-        }
+        return description;
     }
     
     /**
-     * Take the given item from the character if it has that item.
-     * Return whether item was taken.
-     * 
-     * @param The item to take away.
-     * @returns true if the character had the item before the call.
+     * Gets the item the character carries at the start of a game.
+     * @returns the starting item, or null if there is none.
      */
-    public boolean take(Item it)
+    public Item getItem() 
     {
-        if (itemList.contains(it)) {
-            itemList.remove(it);
-            return true;
-        } else {
-            return false;
-        }
+        return item;
     }
     
     /**
-     * Give an item to the character.
-     * Return whether item was given.
-     * 
-     * @param The item to take away.
-     * @returns true if the character had received the item.
+     * Return the bit representing this character in a character mask.
+     */
+    public int bit()
+    {
+        return 1 << ordinal();
+    }
+    
+    /**
+     * Return the number of characters.
+     */
+    public static int count()
+    {
+        return COUNT;
+    }
+    
+    /**
+     * Return the act the character performs by default when entering a room.
      */
-    public boolean receive(Item e)
+    public Act getAct()
     {
-        if (!itemList.contains(e)) {
-            itemList.add(e);
-            return true;
-        } else {
-            return false;
-        }
+        return act;
     }
     
     /**
-     * Gets the item list from the character.
-     * @returns the item list from the character.
+     * Return how the character chooses where to go by default: it takes a
+     * random exit as often as its move probability says, or stays if it
+     * never moves.
      */
-    public Set<Item> getList() 
+    public Behaviour getBehaviour()
     {
-        return itemList;
+        return behaviour;
     }
     
     /**
@@ -0,0 +1,267 @@
+package com.wol.app;
+
+/**
+ * The state of a character within a single game: the room it is in and
+ * the items it carries.
+ *
+ * Every game owns one CharacterState per character, so that games running
+ * in the same JVM never share state. The Character itself is immutable.
+ * The items are kept in an Inventory, so they are never duplicated or
+ * lost when characters give, take or trade them, even with the player of
+ * another game in a SharedWorld.
+ */
+public class CharacterState
+{
+    private final Character character;
+    // Characters items inventory, one bit per item (see Item.bit())
+    private final Inventory items;
+    // Characters current room
+    private Room room;
+    // The items when their change was last recorded
+    private int recorded;
+
+    /**
+     * Create the state of a character carrying its starting item.
+     *
+     * @param character The character described by this state.
+     *
+     * Pre-condition: character is not null.
+     */
+    public CharacterState(Character character)
+    {
+        this(character, character.getItem() == null ? 0 : character.getItem().bit());
+    }
+
+    /**
+     * Create the state of a character carrying the given items.
+     *
+     * @param character The character described by this state.
+     * @param items     The items carried, see Item.mask().
+     *
+     * Pre-condition: character is not null.
+     */
+    public CharacterState(Character character, int items)
+    {
+        assert character != null : "CharacterState.CharacterState has null character";
+        this.character = character;
+        this.items     = new Inventory(items);
+        this.recorded  = items;
+    }
+
+    /**
+     * Return the character this state belongs to.
+     */
+    public Character getCharacter()
+    {
+        return character;
+    }
+
+    /**
+     * Return the room the character is in, or null if it has not been placed.
+     */
+    public Room getRoom()
+    {
+        return room;
+    }
+
+    /**
+     * Record the room the character is in, null if it is in none.
+     * Only rooms record this, when the character is added or removed.
+     */
+    void setRoom(Room room)
+    {
+        Room old = this.room;
+        this.room = room;
+        if (old != null) {
+            old.invalidate();
+        }
+        if (room != null) {
+            room.invalidate();
+        }
+        Room either = room != null ? room : old;
+        if (either != null) {
+            either.getBoard().record(EventLog.ROOM, character.ordinal(),
+                room == null ? World.NO_ROOM : room.getId());
+        }
+    }
+
+    /**
+     * Return the description and description of items if they exist.
+     */
+    public String toString()
+    {
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Append the description and description of items if they exist.
+     *
+     * @return The given builder.
+     */
+    public StringBuilder appendTo(StringBuilder out)
+    {
+        out.append(character);
+        int carried = items.get();
+        if (carried != 0) {
+            Item.describe(carried, out.append(" having the item[s]: "));
+        }
+        return out;
+    }
+
+    /**
+     * Take the given item from the character if it has that item.
+     * Return whether item was taken.
+     *
+     * @param it The item to take away.
+     * @returns true if the character had the item before the call.
+     */
+    public boolean take(Item it)
+    {
+        return changed(items.remove(it));
+    }
+
+    /**
+     * Give an item to the character.
+     * Return whether item was given.
+     *
+     * @param it The item to give.
+     * @returns true if the character had received the item.
+     */
+    public boolean receive(Item it)
+    {
+        return changed(items.add(it));
+    }
+
+    /**
+     * Give an item to another character, if this one carries it and the
+     * other does not. The item moves at once; it is never carried by both
+     * or neither.
+     *
+     * @param other The character receiving the item.
+     * @param it    The item to give.
+     * @returns true if the item was given.
+     *
+     * Pre-condition: other and it are not null.
+     */
+    public boolean give(CharacterState other, Item it)
+    {
+        assert other != null : "CharacterState.give has null other";
+        assert it != null : "CharacterState.give has null item";
+        return other.changed(changed(Inventory.transfer(items, other.items, it)));
+    }
+
+    /**
+     * Swap an item for another with another character: give one item and
+     * take the other, if each carries what it gives and lacks what it
+     * takes. Either both items move or neither does.
+     *
+     * @param other The character to trade with.
+     * @param given The item this character gives.
+     * @param taken The item this character takes.
+     * @returns true if the items were swapped.
+     *
+     * Pre-condition: none of the arguments are null and the items differ.
+     */
+    public boolean swap(CharacterState other, Item given, Item taken)
+    {
+        assert other != null : "CharacterState.swap has null other";
+        return other.changed(changed(Inventory.swap(items, given, other.items, taken)));
+    }
+
+    /**
+     * Give an item to the character of another game, driven by another
+     * thread, as give() does. Only the change to this character is
+     * recorded; the other's is recorded by its own thread, see refresh().
+     *
+     * Pre-condition: other and it are not null.
+     */
+    boolean pass(CharacterState other, Item it)
+    {
+        assert other != null : "CharacterState.pass has null other";
+        assert it != null : "CharacterState.pass has null item";
+        return changed(Inventory.transfer(items, other.items, it));
+    }
+
+    /**
+     * Swap an item for another with the character of another game, as
+     * swap() does, recording only the change to this character.
+     *
+     * Pre-condition: none of the arguments are null and the items differ.
+     */
+    boolean exchange(CharacterState other, Item given, Item taken)
+    {
+        assert other != null : "CharacterState.exchange has null other";
+        return changed(Inventory.swap(items, given, other.items, taken));
+    }
+
+    /**
+     * Record a change to the items made by the character of another game
+     * since the items were last recorded.
+     */
+    void refresh()
+    {
+        changed(items.get() != recorded);
+    }
+
+    /**
+     * Stop the character taking items, once its game left a SharedWorld,
+     * so that no other player gives it items nobody would play with.
+     * setItems() lets it take items again.
+     */
+    void close()
+    {
+        items.close();
+    }
+
+    /**
+     * Replace the items carried, see Item.mask().
+     */
+    void setItems(int mask)
+    {
+        int before = items.get();
+        items.set(mask);
+        changed(mask != before);
+    }
+
+    /**
+     * If the items changed, drop the cached description of the character's
+     * room and record the change. Return whether they changed.
+     */
+    private boolean changed(boolean changed)
+    {
+        if (changed) {
+            recorded = items.get();
+            if (room != null) {
+                room.invalidate();
+                room.getBoard().record(EventLog.ITEMS, character.ordinal(), recorded);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @returns true if the character carries the given item.
+     */
+    public boolean has(Item it)
+    {
+        return items.has(it);
+    }
+
+    /**
+     * @param mask A set of items, see Item.mask().
+     * @returns true if the character carries all of the given items.
+     */
+    public boolean hasAll(int mask)
+    {
+        return (items.get() & mask) == mask;
+    }
+
+    /**
+     * Gets the items carried by the character, one bit per item.
+     * @returns the item mask of the character.
+     */
+    public int getItems()
+    {
+        return items.get();
+    }
+}
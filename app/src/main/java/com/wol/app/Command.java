@@ -12,4 +12,20 @@ public interface Command
      * @return Message to the player.
      */
     public String process(GameMain ui, Game game); 
+
+    /**
+     * Process the command, timing it when metrics are on, and write the
+     * changes it made to the game's log.
+     * @param ui  The user interface of the game.
+     * @param game The actual game.
+     * @return Message to the player.
+     */
+    default String execute(GameMain ui, Game game)
+    {
+        long start = Metrics.start();
+        String result = process(ui, game);
+        game.sync();
+        Metrics.COMMAND.stop(start);
+        return result;
+    }
 }
@@ -0,0 +1,135 @@
+package com.wol.app;
+
+/**
+ * The commands of the game, for programs that play it without typing. <br/>
+ *
+ * Every command without a slot number is a shared instance made once,
+ * the same the Parser returns for its text, so issuing commands through
+ * this class allocates nothing.
+ */
+public class Commands
+{
+    private static final Command UNKNOWN = (GameMain ui, Game game) -> "I do not understand this command.";
+    private static final Command HELP    = (GameMain ui, Game game) -> game.help() + ui.getCommands();
+    private static final Command QUIT    = (GameMain ui, Game game) -> game.quit();
+    private static final Command LOOK    = (GameMain ui, Game game) -> game.look();
+    private static final Command EAT     = (GameMain ui, Game game) -> game.eat();
+    private static final Command RANDOM  = (GameMain ui, Game game) -> game.goRoom(null, true);
+    private static final Command SAVE    = (GameMain ui, Game game) -> ui.save(game);
+    private static final Command LOAD    = (GameMain ui, Game game) -> ui.load(game);
+    private static final Command HINT    = (GameMain ui, Game game) -> game.hint();
+    private static final Command TRADE   = (GameMain ui, Game game) -> game.trade();
+    private static final Command[] GO    = new Command[Direction.values().length];
+    private static final Command[] TAKE  = new Command[Item.values().length];
+    private static final Command[] GIVE  = new Command[Item.values().length];
+    static {
+        for (Direction direction : Direction.values()) {
+            GO[direction.ordinal()] = (GameMain ui, Game game) -> game.goRoom(direction, false);
+        }
+        for (Item item : Item.values()) {
+            TAKE[item.ordinal()] = (GameMain ui, Game game) -> game.take(item);
+            GIVE[item.ordinal()] = (GameMain ui, Game game) -> game.give(item);
+        }
+    }
+
+    private Commands()
+    {
+    }
+
+    /**
+     * Return the command answering that it is not understood.
+     */
+    public static Command unknown()
+    {
+        return UNKNOWN;
+    }
+
+    /**
+     * Return the command going in a direction.
+     *
+     * Pre-condition: direction is not null.
+     */
+    public static Command go(Direction direction)
+    {
+        assert direction != null : "Commands.go has null direction";
+        return GO[direction.ordinal()];
+    }
+
+    /**
+     * Return the command taking an item.
+     *
+     * Pre-condition: item is not null.
+     */
+    public static Command take(Item item)
+    {
+        assert item != null : "Commands.take has null item";
+        return TAKE[item.ordinal()];
+    }
+
+    /**
+     * Return the command giving an item away.
+     *
+     * Pre-condition: item is not null.
+     */
+    public static Command give(Item item)
+    {
+        assert item != null : "Commands.give has null item";
+        return GIVE[item.ordinal()];
+    }
+
+    public static Command help()   { return HELP; }
+    public static Command quit()   { return QUIT; }
+    public static Command look()   { return LOOK; }
+    public static Command eat()    { return EAT; }
+    public static Command random() { return RANDOM; }
+    public static Command hint()   { return HINT; }
+    public static Command trade()  { return TRADE; }
+
+    /**
+     * Return the command saving the game in its default slot.
+     */
+    public static Command save()
+    {
+        return SAVE;
+    }
+
+    /**
+     * Return the command saving the game in the given slot.
+     */
+    public static Command save(int slot)
+    {
+        return (GameMain ui, Game game) -> ui.save(game, slot);
+    }
+
+    /**
+     * Return the command saving the game under the given name.
+     */
+    public static Command save(String name)
+    {
+        return (GameMain ui, Game game) -> ui.save(game, name);
+    }
+
+    /**
+     * Return the command loading the game from its default slot.
+     */
+    public static Command load()
+    {
+        return LOAD;
+    }
+
+    /**
+     * Return the command loading the game from the given slot.
+     */
+    public static Command load(int slot)
+    {
+        return (GameMain ui, Game game) -> ui.load(game, slot);
+    }
+
+    /**
+     * Return the command loading the game saved under the given name.
+     */
+    public static Command load(String name)
+    {
+        return (GameMain ui, Game game) -> ui.load(game, name);
+    }
+}
@@ -0,0 +1,388 @@
+package com.wol.app;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Answers how many moves it takes to get from one room of a world to
+ * another. <br/>
+ *
+ * The distances of all rooms to the goal are found once by a breadth-first
+ * search against the exits, so questions about the goal are answered by
+ * looking up one number. For other rooms, a world of at most EXACT_ROOMS
+ * rooms keeps a table of the distances between all rooms, found by a
+ * search from every room in parallel. Larger worlds keep the distances
+ * from and to a few landmarks, spread out so that each is far from the
+ * others, and answer with an A* search guided by the lower bounds the
+ * landmarks give, which visits few rooms besides those on a shortest path.
+ *
+ * Exits may lead one way only, so the distance from a room to another
+ * need not be the distance back.
+ */
+public class DistanceOracle
+{
+    // Returned for rooms that cannot be reached.
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    // The largest world that keeps a table of all distances.
+    public static final int EXACT_ROOMS = 1024;
+    // Landmarks of larger worlds.
+    static final int LANDMARKS = 4;
+    // Landmark distances are kept as chars; this one marks rooms not reached.
+    private static final char FAR = java.lang.Character.MAX_VALUE;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final World world;
+    private final int[][] reverse;     // rooms leading into each room, see reverse()
+    private final int[] toGoal;
+    private final short[] table;       // distance from a to b at a * rooms + b, -1 if unreachable
+    private final char[][] fromLandmark;
+    private final char[][] toLandmark;
+
+    /**
+     * Find the distances of a world.
+     *
+     * Pre-condition: world is not null.
+     */
+    public DistanceOracle(World world)
+    {
+        assert world != null : "DistanceOracle.DistanceOracle has null world";
+        this.world = world;
+        int rooms = world.size();
+        reverse = reverse(world);
+        toGoal = search(world.getGoal(), reverse);
+
+        if (rooms <= EXACT_ROOMS) {
+            table = new short[rooms * rooms];
+            IntStream.range(0, rooms).parallel().forEach(from -> {
+                int[] distances = search(from, null);
+                for (int to = 0; to < rooms; to++) {
+                    table[from * rooms + to] = (short) (distances[to] == UNREACHABLE ? -1 : distances[to]);
+                }
+            });
+            fromLandmark = null;
+            toLandmark   = null;
+        } else {
+            table = null;
+            fromLandmark = new char[LANDMARKS][];
+            toLandmark   = new char[LANDMARKS][];
+            // The first landmark is the room farthest from the goal, every
+            // other the room farthest from the landmarks so far.
+            int[] nearest = toGoal.clone();
+            for (int i = 0; i < LANDMARKS; i++) {
+                int landmark = 0;
+                for (int room = 1; room < rooms; room++) {
+                    if (rank(nearest[room]) > rank(nearest[landmark])) {
+                        landmark = room;
+                    }
+                }
+                int[] from = search(landmark, null);
+                int[] to   = search(landmark, reverse);
+                fromLandmark[i] = shorten(from);
+                toLandmark[i]   = shorten(to);
+                for (int room = 0; room < rooms; room++) {
+                    nearest[room] = Math.min(nearest[room], Math.min(from[room], to[room]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Return how suitable a room at the given distance from the landmarks
+     * is as the next one: far, but reachable.
+     */
+    private static long rank(int distance)
+    {
+        return distance == UNREACHABLE ? -1 : distance;
+    }
+
+    /**
+     * Return the distances as chars, FAR for rooms too far or not reached.
+     */
+    private static char[] shorten(int[] distances)
+    {
+        char[] result = new char[distances.length];
+        for (int i = 0; i < distances.length; i++) {
+            result[i] = (char) Math.min(distances[i], FAR);
+        }
+        return result;
+    }
+
+    /**
+     * Return, for every room, the rooms with an exit into it.
+     */
+    private static int[][] reverse(World world)
+    {
+        int rooms = world.size();
+        int[] counts = new int[rooms];
+        for (int room = 0; room < rooms; room++) {
+            for (Direction direction : DIRECTIONS) {
+                int exit = world.getExit(room, direction);
+                if (exit != World.NO_ROOM) {
+                    counts[exit]++;
+                }
+            }
+        }
+        // Predecessors of room r are at starts[r] .. starts[r + 1] of sources.
+        int[] starts = new int[rooms + 1];
+        for (int room = 0; room < rooms; room++) {
+            starts[room + 1] = starts[room] + counts[room];
+        }
+        int[] sources = new int[starts[rooms]];
+        int[] next = Arrays.copyOf(starts, rooms);
+        for (int room = 0; room < rooms; room++) {
+            for (Direction direction : DIRECTIONS) {
+                int exit = world.getExit(room, direction);
+                if (exit != World.NO_ROOM) {
+                    sources[next[exit]++] = room;
+                }
+            }
+        }
+        return new int[][] {starts, sources};
+    }
+
+    /**
+     * Return the distances from a room to all rooms, or with reverse from
+     * reverse(), of all rooms to a room.
+     */
+    private int[] search(int start, int[][] reverse)
+    {
+        int rooms = world.size();
+        int[] distances = new int[rooms];
+        Arrays.fill(distances, UNREACHABLE);
+        int[] queue = new int[rooms];
+        int head = 0;
+        int tail = 0;
+        distances[start] = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int room = queue[head++];
+            int distance = distances[room] + 1;
+            if (reverse == null) {
+                for (Direction direction : DIRECTIONS) {
+                    int exit = world.getExit(room, direction);
+                    if (exit != World.NO_ROOM && distances[exit] == UNREACHABLE) {
+                        distances[exit] = distance;
+                        queue[tail++] = exit;
+                    }
+                }
+            } else {
+                for (int i = reverse[0][room]; i < reverse[0][room + 1]; i++) {
+                    int source = reverse[1][i];
+                    if (distances[source] == UNREACHABLE) {
+                        distances[source] = distance;
+                        queue[tail++] = source;
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Return the world of the oracle.
+     */
+    public World getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * Return the number of moves from a room to the goal, or UNREACHABLE.
+     *
+     * Pre-condition: 0 <= room < getWorld().size().
+     */
+    public int toGoal(int room)
+    {
+        return toGoal[room];
+    }
+
+    /**
+     * Return the number of moves from every room to the given room, or
+     * UNREACHABLE, by room number. This searches the whole world, so the
+     * result is best found once and shared.
+     *
+     * Pre-condition: 0 <= room < getWorld().size().
+     */
+    public int[] distancesTo(int room)
+    {
+        return room == world.getGoal() ? toGoal.clone() : search(room, reverse);
+    }
+
+    /**
+     * Return the number of moves from one room to another, or UNREACHABLE.
+     *
+     * Pre-condition: both rooms are rooms of the world.
+     */
+    public int distance(int from, int to)
+    {
+        if (to == world.getGoal()) {
+            return toGoal[from];
+        } else if (table != null) {
+            int distance = table[from * world.size() + to];
+            return distance < 0 ? UNREACHABLE : distance;
+        } else {
+            return search(from, to);
+        }
+    }
+
+    /**
+     * Return a number of moves the distance from one room to another is
+     * at least, UNREACHABLE if it is known that there is no way.
+     *
+     * Pre-condition: both rooms are rooms of the world.
+     */
+    public int lowerBound(int from, int to)
+    {
+        if (table != null || to == world.getGoal()) {
+            return distance(from, to);
+        }
+        int bound = 0;
+        for (int i = 0; i < LANDMARKS; i++) {
+            // d(from, to) >= d(L, to) - d(L, from) and d(from, to) >= d(from, L) - d(to, L)
+            char fromL = fromLandmark[i][from], toL = fromLandmark[i][to];
+            if (fromL != FAR && toL != FAR) {
+                bound = Math.max(bound, toL - fromL);
+            }
+            char fromTo = toLandmark[i][from], toTo = toLandmark[i][to];
+            if (fromTo != FAR && toTo != FAR) {
+                bound = Math.max(bound, fromTo - toTo);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Return the distance from one room to another by an A* search
+     * guided by the landmarks.
+     */
+    private int search(int from, int to)
+    {
+        if (from == to) {
+            return 0;
+        }
+        Visited visited = new Visited();
+        long[] heap = new long[64]; // estimate << 32 | room
+        int size = 0;
+        visited.put(from, 0);
+        heap[size++] = (long) lowerBound(from, to) << 32 | from;
+        while (size > 0) {
+            long top = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size);
+            int room = (int) top;
+            int distance = visited.get(room);
+            if ((int) (top >>> 32) > distance + lowerBound(room, to)) {
+                continue; // reached again by a shorter way since queued
+            }
+            if (room == to) {
+                return distance;
+            }
+            for (Direction direction : DIRECTIONS) {
+                int exit = world.getExit(room, direction);
+                if (exit != World.NO_ROOM) {
+                    int known = visited.get(exit);
+                    if (known < 0 || known > distance + 1) {
+                        visited.put(exit, distance + 1);
+                        if (size == heap.length) {
+                            heap = Arrays.copyOf(heap, size * 2);
+                        }
+                        heap[size] = (long) (distance + 1 + lowerBound(exit, to)) << 32 | exit;
+                        siftUp(heap, size++);
+                    }
+                }
+            }
+        }
+        return UNREACHABLE;
+    }
+
+    private static void siftUp(long[] heap, int i)
+    {
+        long value = heap[i];
+        while (i > 0 && heap[(i - 1) / 2] > value) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = value;
+    }
+
+    private static void siftDown(long[] heap, int size)
+    {
+        if (size == 0) {
+            return;
+        }
+        long value = heap[0];
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= value) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+    /**
+     * The distances of the rooms reached by a search, in an open-addressing
+     * table that grows with the rooms reached rather than the world.
+     */
+    private static class Visited
+    {
+        private int[] rooms = new int[64];
+        private int[] distances = new int[64];
+        private int size;
+
+        Visited()
+        {
+            Arrays.fill(rooms, World.NO_ROOM);
+        }
+
+        /**
+         * Return the distance of a room, or -1 if it has not been reached.
+         */
+        int get(int room)
+        {
+            for (int i = slot(room, rooms.length); ; i = (i + 1) & (rooms.length - 1)) {
+                if (rooms[i] == room) {
+                    return distances[i];
+                } else if (rooms[i] == World.NO_ROOM) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(int room, int distance)
+        {
+            if (2 * (size + 1) > rooms.length) {
+                int[] oldRooms = rooms;
+                int[] oldDistances = distances;
+                rooms = new int[oldRooms.length * 2];
+                distances = new int[oldRooms.length * 2];
+                Arrays.fill(rooms, World.NO_ROOM);
+                size = 0;
+                for (int i = 0; i < oldRooms.length; i++) {
+                    if (oldRooms[i] != World.NO_ROOM) {
+                        put(oldRooms[i], oldDistances[i]);
+                    }
+                }
+            }
+            int i = slot(room, rooms.length);
+            while (rooms[i] != World.NO_ROOM && rooms[i] != room) {
+                i = (i + 1) & (rooms.length - 1);
+            }
+            if (rooms[i] == World.NO_ROOM) {
+                size++;
+            }
+            rooms[i] = room;
+            distances[i] = distance;
+        }
+
+        private static int slot(int room, int length)
+        {
+            return (room * 0x9E3779B9 >>> 7) & (length - 1);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.wol.app;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only log of the changes to one game, with periodic snapshots
+ * from which the game is restored. <br/>
+ *
+ * The log starts with a header holding the seed the game started with and
+ * the size of its world, followed by one event of 8 bytes per change: the clock
+ * advancing, a character entering or leaving a room, a character's items
+ * changing or the game ending. An event holds its type, the character and
+ * the new value, so events may be applied to any earlier state.
+ *
+ * Every so many events, when the clock advances, the log is flushed and
+ * the state of the game is written to a snapshot file next to the log,
+ * named after it with ".snapshot" appended. The snapshot replaces the
+ * previous one at once, so there is always a complete snapshot. A game is
+ * restored from the snapshot and the events logged after it; an event cut
+ * short by a crash is ignored.
+ *
+ * Events are collected in a buffer and written to the file in batches:
+ * at the end of every command, see Game.sync(), when the buffer is full,
+ * on flush() and on close(). A crash of the program thus loses at most
+ * the command being executed. The log and the snapshot are forced to the
+ * disk whenever a snapshot is taken and on close(), so a crash of the
+ * machine loses at most the events logged since the last snapshot.
+ */
+public class EventLog implements Closeable
+{
+    // "WOLE", the first int of every event log.
+    static final int MAGIC = 0x574F4C45;
+    // "WOLS", the first int of every snapshot.
+    static final int SNAPSHOT_MAGIC = 0x574F4C53;
+    static final int VERSION = 2;
+    // Event types.
+    static final int TIME = 1;
+    static final int ROOM = 2;
+    static final int ITEMS = 3;
+    static final int OUTCOME = 4;
+    // Events after which a snapshot is taken by default.
+    public static final int INTERVAL = 4096;
+    // Bytes before the first event: magic, version, seed and rooms.
+    private static final int HEADER = 20;
+    // Events are batched in a buffer of this size.
+    private static final int CHUNK = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Path snapshot;
+    private final Game game;
+    private final int interval;
+    private long events;     // events logged, including those in the buffer
+    private long snapshotAt; // events logged when the last snapshot was taken
+
+    /**
+     * Create a log over an open file positioned after its last event.
+     */
+    private EventLog(FileChannel channel, Path path, Game game, int interval, long events)
+    {
+        this.channel  = channel;
+        this.snapshot = path.resolveSibling(path.getFileName() + ".snapshot");
+        this.game     = game;
+        this.interval = interval;
+        this.events   = events;
+        buffer = ByteBuffer.allocateDirect(CHUNK);
+    }
+
+    /**
+     * Start logging a game, replacing the log and its snapshot if they
+     * exist. The game's current state is the first snapshot.
+     *
+     * @param path     The log file.
+     * @param game     The game to log.
+     * @param interval The number of events after which a snapshot is taken.
+     * @throws IOException if the files cannot be written.
+     *
+     * Pre-condition: game is not null and interval is positive.
+     */
+    public static EventLog create(Path path, Game game, int interval) throws IOException
+    {
+        assert game != null : "EventLog.create has null game";
+        assert interval > 0 : "EventLog.create has no interval";
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        EventLog log = new EventLog(channel, path, game, interval, 0);
+        log.buffer.putInt(MAGIC).putInt(VERSION).putLong(game.getSeed())
+            .putInt(game.getWorld().size());
+        log.snapshot();
+        game.setEventLog(log);
+        return log;
+    }
+
+    /**
+     * Restore a game from a log and its snapshot, and go on logging it.
+     *
+     * @param path     The log file.
+     * @param world    The world the game was played on.
+     * @param interval The number of events after which a snapshot is taken.
+     * @return The log, whose game is the restored one.
+     * @throws IOException if the files cannot be read, are not of the
+     * same game or were logged on another world.
+     *
+     * Pre-condition: world is not null and interval is positive.
+     */
+    public static EventLog restore(Path path, World world, int interval) throws IOException
+    {
+        assert world != null : "EventLog.restore has null world";
+        assert interval > 0 : "EventLog.restore has no interval";
+        Path snapshot = path.resolveSibling(path.getFileName() + ".snapshot");
+        ByteBuffer state = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (log.limit() < HEADER || log.getInt() != MAGIC || log.getInt() != VERSION) {
+                throw new IOException(path + " is not a version " + VERSION + " event log");
+            }
+            long seed = log.getLong();
+            if (log.getInt() != world.size()) {
+                throw new IOException(path + " was logged on another world");
+            }
+            if (state.getInt() != SNAPSHOT_MAGIC || state.getInt() != VERSION) {
+                throw new IOException(snapshot + " is not a version " + VERSION + " snapshot");
+            }
+            long from = state.getLong();
+
+            Game game = new Game(world, seed);
+            game.load(state);
+            long events = (log.limit() - HEADER) / 8;
+            for (long event = from; event < events; event++) {
+                game.apply(log.getLong(HEADER + (int) (event * 8)));
+            }
+
+            channel.truncate(HEADER + events * 8).position(HEADER + events * 8);
+            EventLog restored = new EventLog(channel, path, game, interval, events);
+            restored.snapshotAt = from;
+            game.setEventLog(restored);
+            return restored;
+        } catch (RuntimeException e) {
+            channel.close();
+            throw new IOException(path + " is a broken event log", e);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return an event.
+     *
+     * @param type      The type of the event: TIME, ROOM, ITEMS or OUTCOME.
+     * @param character The ordinal of the character concerned, 0 if none.
+     * @param value     The new time, room, item mask or outcome ordinal.
+     */
+    static long event(int type, int character, int value)
+    {
+        return (long) type << 56 | (long) character << 48 | (value & 0xFFFFFFFFL);
+    }
+
+    static int type(long event)      { return (int) (event >>> 56); }
+    static int character(long event) { return (int) (event >>> 48) & 0xFF; }
+    static int value(long event)     { return (int) event; }
+
+    /**
+     * Return the game logged.
+     */
+    public Game getGame()
+    {
+        return game;
+    }
+
+    /**
+     * Return the number of events logged.
+     */
+    public long size()
+    {
+        return events;
+    }
+
+    /**
+     * Log an event, and take a snapshot if the clock advanced and enough
+     * events were logged since the last one.
+     *
+     * @throws UncheckedIOException if a full batch or the snapshot cannot be written.
+     */
+    void append(long event)
+    {
+        try {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.putLong(event);
+            events++;
+            if (type(event) == TIME && events - snapshotAt >= interval) {
+                snapshot();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flush the log, replace the snapshot with the current state of the
+     * game and force both to the disk.
+     *
+     * @throws IOException if the log or the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException
+    {
+        flush();
+        channel.force(false);
+        ByteBuffer state = ByteBuffer.allocate(16 + Game.STATE_BYTES);
+        state.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putLong(events);
+        game.save(state);
+        state.flip();
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (state.hasRemaining()) {
+                out.write(state);
+            }
+            out.force(false);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshotAt = events;
+    }
+
+    /**
+     * Take a snapshot, after a change to the game that is not made of events.
+     *
+     * @throws UncheckedIOException if the log or the snapshot cannot be written.
+     */
+    void checkpoint()
+    {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the events logged by the last command to the file.
+     *
+     * @throws UncheckedIOException if the file cannot be written.
+     */
+    void sync()
+    {
+        if (buffer.position() == 0) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write all logged events to the file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public void flush() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Stop logging the game, write all logged events, force them to the
+     * disk and close the file.
+     */
+    public void close() throws IOException
+    {
+        game.setEventLog(null);
+        try {
+            flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
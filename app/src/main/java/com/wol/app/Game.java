@@ -1,9 +1,6 @@
 package com.wol.app;
-import java.util.Set;
-import java.util.Map;
-import java.util.HashSet;
-import java.util.HashMap;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
 
 /**
  * This class is the central class of the "World of London" application. <br/>
@@ -16,92 +13,128 @@ import java.util.Arrays;
  * 
  * Within the game, you will also have a time limit based on the number of go commands used.
  * If you ran out of time, you lose and the game ends. You will meet various characters along the way.
+ *
+ * Every random choice of a game is drawn from its seed and its time, so
+ * the state of a game is its seed, time and outcome and the rooms and
+ * items of its characters. Changes to that state may be recorded in an
+ * EventLog, and the state may be saved in a SessionStore.
+ *
+ * A game may join a SharedWorld, where its player meets the players of
+ * other games in the same world.
  */
 
 public class Game 
 {
     private static final int TIME_LIMIT = 12;
+    // The items that make a meal.
+    private static final int MEAL = Item.mask(Item.SANDWICH, Item.DRINK, Item.CRISPS);
+    // Multipliers spreading the draws of successive times and choices.
+    private static final long TIME_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long CHOICE_GAMMA = 0xC2B2AE3D27D4EB4FL;
+    // The bytes of a state written by save().
+    static final int STATE_BYTES = 20 + 8 * Character.count();
     private int time;
     private Room currentRoom;
     private Room goalRoom;
     private boolean finished;
-    private Map<Character,Room> CharLocation; // The room location of each character
+    private Outcome outcome;
+    private long seed;
+    private Board board; // The world of this game and where its characters are
+    private CharacterState[] characters; // The room and items of each character in this game, by ordinal
+    private TickScheduler scheduler; // Moves the characters when the clock advances
+    private SharedWorld.Player company; // The game's player in a shared world, may be null
     
     /**
-     * Create the game and initialise its internal map.
+     * Create the game on the London map.
      */
     public Game()
     {
+        this(World.london());
+    }
+
+    /**
+     * Create the game on the given world, with a random seed.
+     * 
+     * Pre-condition: world is not null.
+     */
+    public Game(World world)
+    {
+        this(world, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Create the game on the given world. Every random choice of the game
+     * is drawn from the given seed, so two games with the same world and
+     * seed given the same commands play out the same.
+     * 
+     * Pre-condition: world is not null.
+     */
+    public Game(World world, long seed)
+    {
+        assert world != null : "Game.Game has null world";
+        this.seed    = seed;
         finished = false;
+        outcome      = Outcome.PLAYING;
         time         = 0;
-        CharLocation = new HashMap<>();
-        createRooms();
-    }
-
-    /**
-     * Create all the rooms and link their exits together.
-     */
-    private void createRooms()
-    {
-        Room trafalgarSquare, chinatown, oxfordStreet, soho, coventGarden, 
-        britishMuseum, stPancras, kingsCross, britishLibrary, leicesterSquare;
-
-        // create the rooms
-        trafalgarSquare = new Room("on Trafalgar Square");
-        chinatown       = new Room("in Chinatown");
-        oxfordStreet    = new Room("on Oxford Street");
-        soho            = new Room("in Soho");
-        coventGarden    = new Room("in Covent Garden");
-        britishMuseum   = new Room("in the British Museum");
-        stPancras       = new Room("in St Pancras");
-        kingsCross      = new Room("in Kings Cross");
-        britishLibrary  = new Room("in the British Library");
-        leicesterSquare = new Room("on Leicester Square");
-
-        // Initialise room exits
-        kingsCross      .setExit(Direction.WEST,  stPancras);
-        stPancras       .setExit(Direction.EAST,  kingsCross);
-        stPancras       .setExit(Direction.WEST,  britishLibrary);
-        britishLibrary  .setExit(Direction.EAST,  stPancras);
-        britishLibrary  .setExit(Direction.SOUTH, britishMuseum);
-        britishMuseum   .setExit(Direction.NORTH, britishLibrary);
-        britishMuseum   .setExit(Direction.WEST,  oxfordStreet);
-        oxfordStreet    .setExit(Direction.EAST,  britishMuseum);
-        britishMuseum   .setExit(Direction.SOUTH, coventGarden);
-        coventGarden    .setExit(Direction.NORTH, britishMuseum);
-        oxfordStreet    .setExit(Direction.SOUTH, soho);
-        soho            .setExit(Direction.NORTH, oxfordStreet);
-        soho            .setExit(Direction.SOUTH, chinatown);
-        chinatown       .setExit(Direction.NORTH, soho);
-        chinatown       .setExit(Direction.SOUTH, leicesterSquare);
-        leicesterSquare .setExit(Direction.NORTH, chinatown);
-        leicesterSquare .setExit(Direction.EAST,  coventGarden);
-        coventGarden    .setExit(Direction.WEST,  leicesterSquare);
-        leicesterSquare .setExit(Direction.SOUTH, trafalgarSquare);
-        trafalgarSquare .setExit(Direction.NORTH, leicesterSquare);
-        
+        board        = new Board(world, new SplittableRandom(seed));
+        Metrics.SESSIONS_STARTED.increment();
+        characters   = board.getCharacters();
+        scheduler    = new TickScheduler(board);
+        createRooms(world);
+    }
+
+    /**
+     * Put the characters of the world into their starting rooms.
+     * Rooms and their exits are kept by the world itself.
+     */
+    private void createRooms(World world)
+    {
         // Adding characters
-        britishLibrary  .addCharacter(Character.SALLY);
-        oxfordStreet    .addCharacter(Character.LAURA);
-        leicesterSquare .addCharacter(Character.ANDY);
-        trafalgarSquare .addCharacter(Character.ALEX);
-        
-        // Adding New characters
-        stPancras.addCharacter(Character.PLAYER);
-        stPancras.addCharacter(Character.COOKIE_MONSTER);
-        stPancras.addCharacter(Character.CRISP_GIVER);
-        
-        // Tracking character location
-        CharLocation.put(Character.SALLY, britishLibrary);
-        CharLocation.put(Character.LAURA, oxfordStreet);
-        CharLocation.put(Character.ANDY,  leicesterSquare);
-        CharLocation.put(Character.ALEX,  trafalgarSquare);
-        CharLocation.put(Character.PLAYER,         stPancras);
-        CharLocation.put(Character.COOKIE_MONSTER, stPancras);
-        CharLocation.put(Character.CRISP_GIVER,    stPancras);
+        for (Character c : Character.values()) {
+            int room = world.getPlacement(c);
+            if (room != World.NO_ROOM) {
+                board.room(room).addCharacter(new CharacterState(c, world.getItems(c)));
+            }
+        }
         
-        currentRoom = CharLocation.get(Character.PLAYER);
-        goalRoom    = trafalgarSquare;
+        currentRoom = characters[Character.PLAYER.ordinal()].getRoom();
+        goalRoom    = board.room(world.getGoal());
+    }
+
+    /**
+     * Return the state of the given character in this game, or null if
+     * the character is not in this game's world.
+     * 
+     * Pre-condition: c is not null.
+     */
+    public CharacterState getCharacterState(Character c)
+    {
+        assert c != null : "Game.getCharacterState gets null character";
+        return characters[c.ordinal()];
+    }
+
+    /**
+     * Return the world the game is played on.
+     */
+    public World getWorld()
+    {
+        return board.getWorld();
+    }
+
+    /**
+     * Return the seed the game's random choices are drawn from.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Return the time, that is the number of go and random commands so far.
+     */
+    public int getTime()
+    {
+        return time;
     }
 
     /**
@@ -112,6 +145,28 @@ public class Game
         return 0 <= time && time <= TIME_LIMIT;
     }
 
+    /**
+     * Return the number of moves the player may still make, the last of
+     * which must reach the goal.
+     */
+    public int movesLeft()
+    {
+        return Math.max(0, TIME_LIMIT - time) + 1;
+    }
+
+    /**
+     * Return whether the game can still be won: it has been won, the
+     * player carries a meal, or the goal can be reached in time.
+     */
+    public boolean isWinnable()
+    {
+        if (finished) {
+            return outcome == Outcome.GOAL || outcome == Outcome.MEAL;
+        }
+        return characters[Character.PLAYER.ordinal()].hasAll(MEAL)
+            || board.getWorld().distances().toGoal(currentRoom.getId()) <= movesLeft();
+    }
+
     /**
      * Return whether the game has finished or not.
      */
@@ -120,6 +175,14 @@ public class Game
         return finished;
     }
 
+    /**
+     * Return how the game ended, or Outcome.PLAYING while it is running.
+     */
+    public Outcome getOutcome()
+    {
+        return outcome;
+    }
+
     /**
      * Opening message for the player.
      */
@@ -151,15 +214,28 @@ public class Game
      * Pre-condition: direction is not null.
      */
     public String goRoom(Direction direction, boolean random) 
+    {
+        long start = Metrics.start();
+        String result = go(direction, random);
+        Metrics.GO_ROOM.stop(start);
+        return result;
+    }
+
+    /**
+     * Advance the clock and try to go in one direction, see goRoom().
+     */
+    private String go(Direction direction, boolean random)
     {
         time++;
+        board.record(EventLog.TIME, 0, time);
         // Move the characters each time we advance the clock
         moveCharacters();
         Room nextRoom;
         
         // Try to leave current room.
         if (random) {
-            nextRoom = currentRoom.randomExit();
+            int exit = board.getWorld().randomExit(currentRoom.getId(), draw(1));
+            nextRoom = exit == World.NO_ROOM ? null : board.room(exit);
         } 
         else {
             assert direction != null : "Game.goRoom gets null direction";
@@ -171,19 +247,20 @@ public class Game
             return "There is no exit in that direction!";
         }
         else {
-            currentRoom.removeCharacter(Character.PLAYER);
-            nextRoom.addCharacter(Character.PLAYER);
+            CharacterState player = characters[Character.PLAYER.ordinal()];
+            currentRoom.removeCharacter(player);
+            nextRoom.addCharacter(player);
             
-            CharLocation.replace(Character.PLAYER, nextRoom);
-            currentRoom = CharLocation.get(Character.PLAYER);
+            currentRoom = nextRoom;
+            placeCompany();
             
             String result = look();
-            if (currentRoom == goalRoom) {
+            if (currentRoom.equals(goalRoom)) {
                 result += "\nCongratulations! You reached the goal of the game.\n";
-                result += quit();
+                result += quit(Outcome.GOAL);
             } else if (!inTime()) {
                 result += "\nYou ran out of time. You have lost.\n";
-                result += quit();
+                result += quit(Outcome.TIMEOUT);
             }
             
             return result;
@@ -195,16 +272,67 @@ public class Game
      */
     public String quit()
     {
+        return quit(Outcome.QUIT);
+    }
+
+    /**
+     * Finish the game with the given outcome.
+     * 
+     * Pre-condition: outcome is not Outcome.PLAYING.
+     */
+    private String quit(Outcome result)
+    {
+        assert result != Outcome.PLAYING : "Game.quit gets PLAYING outcome";
+        if (!finished) {
+            outcome = result;
+            board.record(EventLog.OUTCOME, 0, result.ordinal());
+            Metrics.SESSIONS_FINISHED.increment();
+            if (result == Outcome.GOAL || result == Outcome.MEAL) {
+                Metrics.WINS.increment();
+            } else if (result == Outcome.TIMEOUT) {
+                Metrics.TIMEOUTS.increment();
+            }
+        }
         finished = true;
+        placeCompany();
         return "Thank you for playing.  Good bye.";
     }
 
     /**
-     * Execute look command.
+     * Execute look command. In a shared world, the other players in the
+     * room are named too.
      */
     public String look()
     {
-        return currentRoom.getLongDescription();
+        if (company == null) {
+            return currentRoom.getLongDescription();
+        }
+        characters[Character.PLAYER.ordinal()].refresh();
+        return company.describe(currentRoom.getLongDescription());
+    }
+
+    /**
+     * Execute hint command: tell the way to the goal, without advancing the clock.
+     */
+    public String hint()
+    {
+        DistanceOracle oracle = board.getWorld().distances();
+        int distance = oracle.toGoal(currentRoom.getId());
+        if (distance == DistanceOracle.UNREACHABLE) {
+            return "The goal cannot be reached from here.";
+        }
+        String result = "The goal is " + distance + (distance == 1 ? " move" : " moves") + " away";
+        for (Direction direction : Direction.values()) {
+            int exit = board.getWorld().getExit(currentRoom.getId(), direction);
+            if (exit != World.NO_ROOM && oracle.toGoal(exit) == distance - 1) {
+                result += "; go " + direction + ".";
+                break;
+            }
+        }
+        if (distance > movesLeft()) {
+            result += "\nYou do not have enough time left to reach it.";
+        }
+        return result;
     }
 
     /**
@@ -215,24 +343,59 @@ public class Game
     public String take(Item item)
     {
         assert item != null : "Game.take gets null item";
-        if (currentRoom.take(item)) {
-            Character.PLAYER.getList().add(item);
+        CharacterState player = characters[Character.PLAYER.ordinal()];
+        if (player.has(item)) {
+            return "You already have this item.";
+        } else if (currentRoom.take(item, player)) {
             return "Item taken.";
         } else {
             return "Item not in this room.";
         }
     }
+
+    /**
+     * Execute give command: give an item to a character in the room that
+     * does not carry it, or else to another player in a shared world.
+     * 
+     * Pre-condition: item is not null.
+     */
+    public String give(Item item)
+    {
+        assert item != null : "Game.give gets null item";
+        CharacterState player = characters[Character.PLAYER.ordinal()];
+        if (!player.has(item)) {
+            return "You do not have this item.";
+        } else if (currentRoom.give(player, item) || company != null && company.give(item)) {
+            return "Item given.";
+        } else {
+            return "Nobody here can take this item.";
+        }
+    }
+
+    /**
+     * Execute trade command: swap an item the player carries for one it
+     * lacks with a character in the room, see Room.trade(), or else with
+     * another player in a shared world.
+     */
+    public String trade()
+    {
+        CharacterState player = characters[Character.PLAYER.ordinal()];
+        int before = player.getItems();
+        if (!currentRoom.trade(player)) {
+            String traded = company == null ? null : company.trade();
+            return traded != null ? traded : "Nobody here wants to trade.";
+        }
+        int after = player.getItems();
+        return "You traded your " + Item.lowest(before & ~after) + " for " + Item.lowest(after & ~before) + ".";
+    }
     
     /**
      * Execute eat command.
      */
     public String eat()
     {
-        final Set<Item> meal = 
-            new HashSet<>(Arrays.asList(Item.SANDWICH, Item.DRINK, Item.CRISPS));
-        
-        if (Character.PLAYER.getList().containsAll(meal)) {
-            return "Congratulations! You have won.\n" + quit();
+        if (characters[Character.PLAYER.ordinal()].hasAll(MEAL)) {
+            return "Congratulations! You have won.\n" + quit(Outcome.MEAL);
         } else {
             return "You cannot eat yet.";
         }
@@ -240,24 +403,194 @@ public class Game
     
     /**
      * Move all characters in the game based on their move probability
-     * and execute their default behaviours.
+     * and execute their default behaviours, see TickScheduler.
      */
     private void moveCharacters() 
     {
-        double random = Math.random();
-        
-        CharLocation.forEach(
-            (character, room) -> {
-                if (! character.automove(random)) {
-                    Room randRoom = room.randomExit();
+        long start = Metrics.start();
+        scheduler.tick(draw(0));
+        Metrics.MOVE_CHARACTERS.stop(start);
+    }
 
-                    room.removeCharacter(character);
-                    character.enterRoom(randRoom); // Act before adding character.
-                    randRoom.addCharacter(character);
+    /**
+     * Return the random bits of one of the choices made at the current time.
+     */
+    private long draw(int choice)
+    {
+        return TickScheduler.mix(TickScheduler.mix(seed + time * TIME_GAMMA) + (choice + 1) * CHOICE_GAMMA);
+    }
 
-                    CharLocation.replace(character, room, randRoom);
-                }
+    /**
+     * Let a character choose where to go by the given behaviour from now on.
+     * Behaviours made by Behaviours for this game's world may be shared.
+     *
+     * Pre-condition: c and behaviour are not null and c is not the player.
+     */
+    public void setBehaviour(Character c, Behaviour behaviour)
+    {
+        assert c != null && c != Character.PLAYER : "Game.setBehaviour has wrong character";
+        assert behaviour != null : "Game.setBehaviour has null behaviour";
+        board.setBehaviour(c.ordinal(), behaviour);
+    }
+
+    /**
+     * Let a character perform the given act when entering a room from now on.
+     *
+     * Pre-condition: c and act are not null.
+     */
+    public void setAct(Character c, Act act)
+    {
+        assert c != null : "Game.setAct has null character";
+        assert act != null : "Game.setAct has null act";
+        board.setAct(c.ordinal(), act);
+    }
+
+    /**
+     * Record the changes to this game in the given log, or stop recording if null.
+     */
+    void setEventLog(EventLog log)
+    {
+        board.setEventLog(log);
+    }
+
+    /**
+     * Write the changes recorded so far to the game's log, if it is
+     * logged. Called at the end of every command.
+     */
+    void sync()
+    {
+        if (company != null) {
+            characters[Character.PLAYER.ordinal()].refresh();
+        }
+        board.sync();
+    }
+
+    /**
+     * Let the game's player be the given player of a shared world, and
+     * put it into the player's room there.
+     */
+    void setCompany(SharedWorld.Player company)
+    {
+        assert this.company == null : "Game.setCompany for game in a shared world";
+        this.company = company;
+        placeCompany();
+    }
+
+    /**
+     * Put the game's player of a shared world into the player's room, or
+     * out of the world once the game finished.
+     */
+    private void placeCompany()
+    {
+        if (company != null) {
+            company.place(finished ? World.NO_ROOM : currentRoom.getId());
+        }
+    }
+
+    /**
+     * Write the state of the game: its seed, time and outcome and the room
+     * and items of each character, STATE_BYTES in all.
+     *
+     * Pre-condition: out has STATE_BYTES remaining.
+     */
+    void save(ByteBuffer out)
+    {
+        out.putLong(seed).putInt(time).putInt(outcome.ordinal()).putInt(Character.count());
+        for (CharacterState state : characters) {
+            out.putInt(state == null || state.getRoom() == null ? World.NO_ROOM : state.getRoom().getId());
+            out.putInt(state == null ? 0 : state.getItems());
+        }
+    }
+
+    /**
+     * Put the game into a state written by save(), and take a snapshot if
+     * the game is being logged.
+     *
+     * @throws IllegalArgumentException if the state is not one of a game
+     * on this game's world.
+     */
+    void load(ByteBuffer in)
+    {
+        long savedSeed   = in.getLong();
+        int savedTime    = in.getInt();
+        int savedOutcome = in.getInt();
+        if (savedOutcome < 0 || savedOutcome >= Outcome.values().length) {
+            throw new IllegalArgumentException("Unknown outcome " + savedOutcome);
+        }
+        if (in.getInt() != Character.count()) {
+            throw new IllegalArgumentException("Saved for other characters");
+        }
+        int[] rooms = new int[Character.count()];
+        int[] items = new int[Character.count()];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = in.getInt();
+            items[i] = in.getInt();
+            if (rooms[i] < World.NO_ROOM || rooms[i] >= board.getWorld().size()) {
+                throw new IllegalArgumentException("Saved in a room of another world");
+            }
+        }
+        if (rooms[Character.PLAYER.ordinal()] == World.NO_ROOM) {
+            throw new IllegalArgumentException("Saved without the player");
+        }
+
+        if (company != null) {
+            company.place(World.NO_ROOM); // no item may arrive while the items are replaced
+        }
+        seed     = savedSeed;
+        time     = savedTime;
+        outcome  = Outcome.values()[savedOutcome];
+        finished = outcome != Outcome.PLAYING;
+        for (CharacterState state : characters) {
+            if (state != null) {
+                place(state, rooms[state.getCharacter().ordinal()]);
+                state.setItems(items[state.getCharacter().ordinal()]);
             }
-        );
+        }
+        currentRoom = characters[Character.PLAYER.ordinal()].getRoom();
+        placeCompany();
+        board.checkpoint();
+    }
+
+    /**
+     * Apply an event recorded in an EventLog. Events set the part of the
+     * state they concern, so applying an event twice changes nothing.
+     */
+    void apply(long event)
+    {
+        int value = EventLog.value(event);
+        CharacterState state = characters[EventLog.character(event)];
+        switch (EventLog.type(event)) {
+            case EventLog.TIME :
+                time = value;
+                break;
+            case EventLog.ROOM :
+                place(state, value);
+                if (state.getCharacter() == Character.PLAYER && value != World.NO_ROOM) {
+                    currentRoom = state.getRoom();
+                }
+                break;
+            case EventLog.ITEMS :
+                state.setItems(value);
+                break;
+            case EventLog.OUTCOME :
+                outcome  = Outcome.values()[value];
+                finished = outcome != Outcome.PLAYING;
+                break;
+            default :
+                throw new IllegalArgumentException("Unknown event type " + EventLog.type(event));
+        }
+    }
+
+    /**
+     * Move a character into a room, or out of all rooms for NO_ROOM.
+     */
+    private void place(CharacterState state, int room)
+    {
+        if (state.getRoom() != null) {
+            state.getRoom().removeCharacter(state);
+        }
+        if (room != World.NO_ROOM) {
+            board.room(room).addCharacter(state);
+        }
     }
 }
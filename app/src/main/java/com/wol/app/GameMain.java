@@ -1,4 +1,12 @@
 package com.wol.app;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 /**
  * This class is the main class of the "World of London" application. 
  * It provids a text-based user interface to the "World of London".<br>
@@ -18,16 +26,35 @@ package com.wol.app;
  */ 
 public class GameMain
 {
+    // The slots of a store made for the terminal.
+    private static final int SLOTS = 10;
     private Game game;
     private Parser parser;
+    private SessionStore store; // where games are saved, may be null
+    private int slot;           // the slot saved to and loaded from by default
+    private boolean named;      // whether games are saved under names rather than in numbered slots
+    private String name;        // the name saved under and loaded from by default, may be null
+    private OutputSink out = OutputSink.of(System.out); // where play() writes
    
     /**
      * Initialise.
      */
     public GameMain()
     {
-        game = new Game();
-        parser = new Parser();
+        this(new Game(), new Parser());
+    }
+    
+    /**
+     * Initialise with the given game and parser.
+     * 
+     * Pre-condition: neither game nor parser are null.
+     */
+    public GameMain(Game game, Parser parser)
+    {
+        assert game != null : "GameMain.GameMain has null game";
+        assert parser != null : "GameMain.GameMain has null parser";
+        this.game = game;
+        this.parser = parser;
     }
     
     /**
@@ -35,24 +62,226 @@ public class GameMain
      */
     public void play() 
     {            
-        System.out.println(game.welcome());
-        System.out.println(getHelp());
-                
+        out.write(game.welcome());
+        out.write("\n");
+        out.write(getHelp());
+        out.write("\n");
+
         while (!game.finished()) {
-            Command command = parser.getCommand();
-            System.out.println(command.process(this, game));
+            out.write("\n> ");
+            out.flush();
+            Command command = parser.readCommand();
+            out.write(command.execute(this, game));
+            out.write("\n");
+        }
+        out.flush();
+    }
+
+    /**
+     * Write what play() writes to the given sink rather than to System.out.
+     * 
+     * Pre-condition: out is not null.
+     */
+    public void setOutput(OutputSink out)
+    {
+        assert out != null : "GameMain.setOutput has null sink";
+        this.out = out;
+    }
+    
+    /**
+     * Save and load games in the given store, by default in the given slot.
+     * 
+     * @param store The store, or null if games cannot be saved.
+     * @param slot  The slot used by save and load commands without one.
+     * 
+     * Pre-condition: slot is not negative.
+     */
+    public void setStore(SessionStore store, int slot)
+    {
+        assert slot >= 0 : "GameMain.setStore gets negative slot";
+        this.store = store;
+        this.slot  = slot;
+        this.named = false;
+    }
+    
+    /**
+     * Save and load games in the given store shared with other players.
+     * Games are saved under names rather than in numbered slots, a slot
+     * number being taken as a name, so a player reaches only the games
+     * whose names they know.
+     * 
+     * Pre-condition: store is not null.
+     */
+    public void setSharedStore(SessionStore store)
+    {
+        assert store != null : "GameMain.setSharedStore has null store";
+        this.store = store;
+        this.named = true;
+        this.name  = null;
+    }
+    
+    /**
+     * Execute save command for the default slot or name.
+     */
+    public String save(Game game)
+    {
+        return named ? save(game, name) : save(game, slot);
+    }
+    
+    /**
+     * Execute save command. The slot becomes the default slot.
+     */
+    public String save(Game game, int slot)
+    {
+        if (named) {
+            return save(game, Integer.toString(slot));
+        } else if (store == null) {
+            return "There is nowhere to save games.";
+        } else if (slot >= store.slots()) {
+            return "There is no slot " + slot + ".";
+        }
+        store.save(slot, game);
+        this.slot = slot;
+        return "Game saved in slot " + slot + ".";
+    }
+    
+    /**
+     * Execute save command under a name, or for the default slot if games
+     * are saved in numbered slots. The name becomes the default name.
+     */
+    public String save(Game game, String name)
+    {
+        if (!named) {
+            return save(game, slot);
+        } else if (name == null) {
+            return "Save your game under a name, e.g. 'save <name>'.";
+        }
+        int slot = store.slot(SessionStore.key(name), true);
+        if (slot < 0) {
+            return "There is no room left to save games.";
         }
+        store.save(slot, game);
+        this.name = name;
+        return "Game saved as " + name + ".";
+    }
+    
+    /**
+     * Execute load command for the default slot or name.
+     */
+    public String load(Game game)
+    {
+        return named ? load(game, name) : load(game, slot);
+    }
+    
+    /**
+     * Execute load command. The slot becomes the default slot.
+     */
+    public String load(Game game, int slot)
+    {
+        if (named) {
+            return load(game, Integer.toString(slot));
+        } else if (store == null) {
+            return "There is nowhere to load games from.";
+        } else if (slot >= store.slots()) {
+            return "There is no slot " + slot + ".";
+        }
+        try {
+            if (!store.load(slot, game)) {
+                return "No game is saved in slot " + slot + ".";
+            }
+        } catch (IllegalArgumentException e) {
+            return "The game in slot " + slot + " cannot be loaded: " + e.getMessage();
+        }
+        this.slot = slot;
+        return "Game loaded from slot " + slot + ".\n" + game.look();
+    }
+    
+    /**
+     * Execute load command for a name, or for the default slot if games
+     * are saved in numbered slots. The name becomes the default name.
+     */
+    public String load(Game game, String name)
+    {
+        if (!named) {
+            return load(game, slot);
+        } else if (name == null) {
+            return "Load a game by its name, e.g. 'load <name>'.";
+        }
+        int slot = store.slot(SessionStore.key(name), false);
+        try {
+            if (slot < 0 || !store.load(slot, game)) {
+                return "No game is saved as " + name + ".";
+            }
+        } catch (IllegalArgumentException e) {
+            return "The game saved as " + name + " cannot be loaded: " + e.getMessage();
+        }
+        this.name = name;
+        return "Game loaded as " + name + ".\n" + game.look();
     }
     
     /**
      * Main method; used if the game is standalone, outside BlueJ.
+     * 
+     * @param args Optionally "-record" and a file to log the game to for
+     *             the Replayer, "-store" and a file to save games in, then
+     *             a map file or snapshot to play instead of London.
      */
-    public static void main(String[] args)
+    public static void main(String[] args) throws IOException
     {
-        GameMain gameMain = new GameMain();
-        gameMain.play();
+        int arg = 0;
+        Path record = null;
+        Path saves  = null;
+        while (arg + 1 < args.length && (args[arg].equals("-record") || args[arg].equals("-store"))) {
+            if (args[arg].equals("-record")) {
+                record = Paths.get(args[arg + 1]);
+            } else {
+                saves = Paths.get(args[arg + 1]);
+            }
+            arg += 2;
+        }
+        World world = args.length > arg ? WorldLoader.load(Paths.get(args[arg])) : World.london();
+        Game game = new Game(world);
+        Parser parser = new Parser();
+        GameMain gameMain = new GameMain(game, parser);
+        
+        try (ReplayLog log = record == null ? null : new ReplayLog(record, game.getSeed());
+             SessionStore store = saves == null ? null : new SessionStore(saves, world, SLOTS);
+             AsyncOutput out = new AsyncOutput(stdout())) {
+            parser.setLog(log);
+            gameMain.setStore(store, 0);
+            gameMain.setOutput(out);
+            gameMain.play();
+        }
     }
     
+    /**
+     * Return a channel writing to the standard output. Closing it leaves
+     * the standard output open, for the rest of the program to use.
+     */
+    private static WritableByteChannel stdout()
+    {
+        WritableByteChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+        return new WritableByteChannel()
+        {
+            private volatile boolean open = true;
+
+            public int write(ByteBuffer source) throws IOException
+            {
+                return out.write(source);
+            }
+
+            public boolean isOpen()
+            {
+                return open;
+            }
+
+            public void close()
+            {
+                open = false;
+            }
+        };
+    }
+
     /**
      * Tell player how to obtain help.
      */
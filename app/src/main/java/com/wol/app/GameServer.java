@@ -0,0 +1,483 @@
+package com.wol.app;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A server hosting one game per TCP connection. <br/>
+ *
+ * Clients speak the same line protocol as the terminal: every line sent
+ * is parsed as a command (go, take, look, eat, random, quit, help) and
+ * answered with the command's message followed by a "> " prompt. The
+ * connection is closed once the game finishes.
+ *
+ * All connections are served by one thread through a non-blocking
+ * selector. Answers that cannot be written at once are queued for their
+ * connection; a client that lets too much output pile up is not read
+ * from until it catches up, so a slow client never stalls the others.
+ *
+ * If the server has a SessionStore, games are saved in it under names
+ * the clients choose, see GameMain.setSharedStore(), so a client may go
+ * on with its game after connecting again, even to a restarted server,
+ * and reaches only the games whose names it knows.
+ *
+ * If the server has a SharedWorld, the games of all connections join it,
+ * so their players meet in its rooms. A player whose connection closes
+ * quits and leaves the world.
+ *
+ * If the server has a tick, commands are not executed by the selector
+ * thread as they arrive but handed to a TickExecutor, which executes the
+ * commands of all connections in batches once per tick. The answers come
+ * back to the selector thread to be written at the end of the tick.
+ */
+public class GameServer implements Closeable
+{
+    // Longest line accepted; longer lines are cut.
+    private static final int MAX_LINE = 1024;
+    // Output queued for a client before the server stops reading from it.
+    private static final int MAX_PENDING = 64 * 1024;
+    // The slots of a store made for the server.
+    private static final int SLOTS = 1 << 16;
+    // Commands of a client awaiting their answers before the server stops reading from it.
+    static final int MAX_IN_FLIGHT = 64;
+    private static final byte[] PROMPT = "\n> ".getBytes(StandardCharsets.UTF_8);
+
+    private final World world;
+    private final SessionStore store; // may be null
+    private final SharedWorld shared; // the world the games join, null if they are apart
+    private int players;              // players joined to the shared world, to name them
+    private final Parser parser; // parse() keeps no state, so sessions share it
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private final TickExecutor executor; // null to execute commands as they arrive
+    private final ConcurrentLinkedQueue<Answer> answers = new ConcurrentLinkedQueue<>();
+    private volatile boolean running;
+
+    /**
+     * Create a server for games on the given world, listening on the given
+     * port of all interfaces. Call start() to accept connections.
+     *
+     * @param world The world every game is played on.
+     * @param port  The port, 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     *
+     * Pre-condition: world is not null.
+     */
+    public GameServer(World world, int port) throws IOException
+    {
+        this(world, port, null);
+    }
+
+    /**
+     * Create a server for games on the given world that may be saved in
+     * the given store, listening on the given port of all interfaces.
+     * Call start() to accept connections.
+     *
+     * @param world The world every game is played on.
+     * @param port  The port, 0 for any free port.
+     * @param store The store games are saved in, or null if they cannot be.
+     * @throws IOException if the port cannot be bound.
+     *
+     * Pre-condition: world is not null.
+     */
+    public GameServer(World world, int port, SessionStore store) throws IOException
+    {
+        this(world, port, store, 0);
+    }
+
+    /**
+     * Create a server for games on the given world that may be saved in
+     * the given store, executing commands in ticks of the given length,
+     * listening on the given port of all interfaces. Call start() to
+     * accept connections.
+     *
+     * @param world     The world every game is played on.
+     * @param port      The port, 0 for any free port.
+     * @param store     The store games are saved in, or null if they cannot be.
+     * @param tickNanos The length of a tick, 0 to execute commands as they arrive.
+     * @throws IOException if the port cannot be bound.
+     *
+     * Pre-condition: world is not null and tickNanos is not negative.
+     */
+    public GameServer(World world, int port, SessionStore store, long tickNanos) throws IOException
+    {
+        this(world, null, port, store, tickNanos);
+    }
+
+    /**
+     * Create a server whose games all join the given shared world, see
+     * GameServer(World, int, SessionStore, long).
+     *
+     * Pre-condition: shared is not null and tickNanos is not negative.
+     */
+    public GameServer(SharedWorld shared, int port, SessionStore store, long tickNanos) throws IOException
+    {
+        this(shared.getWorld(), shared, port, store, tickNanos);
+    }
+
+    private GameServer(World world, SharedWorld shared, int port, SessionStore store, long tickNanos)
+        throws IOException
+    {
+        assert world != null : "GameServer.GameServer has null world";
+        assert tickNanos >= 0 : "GameServer.GameServer has negative tick";
+        this.world  = world;
+        this.shared = shared;
+        this.store  = store;
+        parser   = new Parser(new ByteArrayInputStream(new byte[0]));
+        selector = Selector.open();
+        server   = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::serve, "game-server");
+        executor = tickNanos == 0 ? null
+            : new TickExecutor(Runtime.getRuntime().availableProcessors(), tickNanos, selector::wakeup);
+    }
+
+    /**
+     * Return the port the server listens on.
+     */
+    public int getPort()
+    {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Return the number of commands executed in ticks so far, 0 if the
+     * server has no tick.
+     */
+    public long getCommands()
+    {
+        return executor == null ? 0 : executor.getCommands();
+    }
+
+    /**
+     * Start serving connections on a thread of the server's own.
+     */
+    public void start()
+    {
+        running = true;
+        if (executor != null) {
+            executor.start();
+        }
+        thread.start();
+    }
+
+    /**
+     * Stop serving and close all connections.
+     */
+    public void close() throws IOException
+    {
+        running = false;
+        if (executor != null) {
+            executor.close();
+        }
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * The selector loop.
+     */
+    private void serve()
+    {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                System.err.println("GameServer: " + e);
+                return;
+            }
+            for (Answer answer; (answer = answers.poll()) != null; ) {
+                try {
+                    answer.session.inFlight--;
+                    answer.session.send(answer.message, answer.finished);
+                    if (answer.session.key.isValid()) {
+                        answer.session.process(); // lines held back while too many were in flight
+                    }
+                } catch (IOException e) {
+                    answer.session.close();
+                }
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Session session = (Session) key.attachment();
+                        if (key.isWritable()) {
+                            session.write();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            session.read();
+                        }
+                    }
+                } catch (IOException e) {
+                    if (key.attachment() instanceof Session) {
+                        ((Session) key.attachment()).close();
+                    } else {
+                        key.cancel();
+                        closeQuietly(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Accept a connection and greet it with a new game.
+     */
+    private void accept() throws IOException
+    {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        Game game = new Game(world);
+        if (shared != null) {
+            shared.join("Player " + ++players, game);
+        }
+        Session session = new Session(key, game);
+        key.attach(session);
+        String greeting = session.game.welcome() + "\n" + session.ui.getHelp();
+        if (store != null) {
+            session.ui.setSharedStore(store);
+            greeting += "\nSave your game with 'save <name>' and go on with it later with 'load <name>'."
+                + " Anyone who knows the name can load the game, so pick one that is hard to guess.";
+        }
+        session.send(greeting, false);
+    }
+
+    private static void closeQuietly(SelectionKey key)
+    {
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    /**
+     * An answer from the executor, to be sent by the selector thread.
+     */
+    private static class Answer
+    {
+        private final Session session;
+        private final String message;
+        private final boolean finished;
+
+        Answer(Session session, String message, boolean finished)
+        {
+            this.session  = session;
+            this.message  = message;
+            this.finished = finished;
+        }
+    }
+
+    /**
+     * The game and buffers of one connection.
+     */
+    private class Session
+    {
+        private final SelectionKey key;
+        private final SocketChannel channel;
+        private final Game game;
+        private final GameMain ui;
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE);
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private final TickExecutor.Player player; // null without an executor
+        private int pending;  // bytes queued in out
+        private int inFlight; // commands submitted and not answered yet
+        private boolean over; // whether the game finished, as far as the answers tell
+
+        Session(SelectionKey key, Game game)
+        {
+            this.key     = key;
+            this.channel = (SocketChannel) key.channel();
+            this.game    = game;
+            this.ui      = new GameMain(game, parser);
+            player = executor == null ? null
+                : executor.join(game, ui, (message, finished) -> answers.add(new Answer(this, message, finished)));
+        }
+
+        /**
+         * Read what the client sent and answer its complete lines.
+         */
+        void read() throws IOException
+        {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            process();
+        }
+
+        /**
+         * Answer the complete lines read, until MAX_IN_FLIGHT commands
+         * await their answers. Then the lines left are kept and the server
+         * stops reading from the client until answers come back.
+         */
+        void process() throws IOException
+        {
+            int start = 0;
+            int i = 0;
+            for (; i < in.position() && !over && inFlight < MAX_IN_FLIGHT; i++) {
+                if (in.get(i) == '\n') {
+                    answer(start, i);
+                    start = i + 1;
+                }
+            }
+            if (start == 0 && i == in.capacity()) {
+                answer(0, i); // cut an overlong line
+                start = i;
+            }
+            in.limit(in.position()).position(start);
+            in.compact();
+            if (inFlight >= MAX_IN_FLIGHT && key.isValid()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Process the input between two positions as a command, without a
+         * trailing '\r', and queue the answer, or submit the command to the
+         * executor if the server has one.
+         */
+        private void answer(int from, int to) throws IOException
+        {
+            if (to > from && in.get(to - 1) == '\r') {
+                to--;
+            }
+            Command command = parser.parse(in, from, to);
+            if (player != null) {
+                inFlight++;
+                player.submit(command);
+            } else {
+                String message = command.execute(ui, game);
+                send(message, game.finished());
+            }
+        }
+
+        /**
+         * Queue a message and a prompt, or only the message if the game
+         * is finished, and write as much as the client accepts.
+         */
+        void send(String message, boolean finished) throws IOException
+        {
+            over |= finished;
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(bytes.length + PROMPT.length);
+            buffer.put(bytes);
+            buffer.put(over ? new byte[] {'\n'} : PROMPT);
+            buffer.flip();
+            out.add(buffer);
+            pending += buffer.remaining();
+            write();
+        }
+
+        /**
+         * Close the connection, and quit a game that has not finished if
+         * it is in a shared world, so that its player leaves the world.
+         */
+        void close()
+        {
+            key.cancel();
+            closeQuietly(key);
+            if (shared != null && !over) {
+                over = true;
+                if (player != null) {
+                    player.submit(Commands.quit());
+                } else {
+                    game.quit();
+                }
+            }
+        }
+
+        /**
+         * Write queued output until the client stops accepting it.
+         */
+        void write() throws IOException
+        {
+            while (!out.isEmpty()) {
+                ByteBuffer buffer = out.peek();
+                pending -= channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    break;
+                }
+                out.poll();
+            }
+            if (out.isEmpty() && over) {
+                key.cancel();
+                channel.close();
+                return;
+            }
+            int ops = out.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+            if (pending < MAX_PENDING && inFlight < MAX_IN_FLIGHT && !over) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+    }
+
+    /**
+     * Run a server until the process is stopped, then close it and the
+     * store, writing all saved games to the file.
+     *
+     * @param args Optionally the port, 4000 by default, a map file, a
+     *             file to save games in, the tick in milliseconds, 0 by
+     *             default to execute commands as they arrive, and "shared"
+     *             for the games to join one shared world.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port    = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        World world = args.length > 1 ? WorldLoader.load(Paths.get(args[1])) : World.london();
+        SessionStore store = args.length > 2 && !args[2].isEmpty()
+            ? new SessionStore(Paths.get(args[2]), world, SLOTS) : null;
+        long tick   = args.length > 3 ? Long.parseLong(args[3]) * 1000000L : 0L;
+        boolean joined = args.length > 4 && args[4].equals("shared");
+
+        GameServer server = joined ? new GameServer(new SharedWorld(world), port, store, tick)
+            : new GameServer(world, port, store, tick);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                if (store != null) {
+                    store.close();
+                }
+            } catch (IOException e) {
+                System.err.println("GameServer: " + e);
+            }
+        }, "game-server-shutdown"));
+        server.start();
+        System.out.println("Serving the World of London on port " + server.getPort());
+    }
+}
@@ -0,0 +1,238 @@
+package com.wol.app;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The items carried by one character, changed atomically without locks. <br/>
+ *
+ * An inventory is a single word packing the item mask, see Item.mask(),
+ * in its low half and a mask of items in transit in its high half. Every
+ * change is a compare-and-set of the whole word, so threads changing the
+ * same inventory never block each other and never lose an update.
+ *
+ * Moving an item between two inventories takes several steps, each a
+ * compare-and-set of one word. The receiver first reserves the item, which
+ * fails if it carries the item or another move is bringing it one; the
+ * giver then holds the item, which takes it out of its mask but keeps its
+ * slot reserved, and fails if the giver lacks it; last, the item is put
+ * into the receiver and both reservations are released. Only the thread
+ * that set a reservation clears it, and a reserved item cannot be added
+ * or taken by anyone else, so a move that fails halfway is undone without
+ * interference, and an item is never duplicated or lost. Other threads
+ * may see an item in transit as carried by neither character.
+ *
+ * An inventory may be closed, for instance once its character has left
+ * the game: it keeps its items but takes no more, so an item moved to a
+ * character nobody plays any more cannot be lost there.
+ */
+public class Inventory
+{
+    private static final AtomicIntegerFieldUpdater<Inventory> WORD =
+        AtomicIntegerFieldUpdater.newUpdater(Inventory.class, "word");
+    // Bits of the word below which the items are kept, above which their reservations.
+    private static final int HALF = 16;
+    private static final int ITEMS = (1 << HALF) - 1;
+    // The top bit, above the reservations, is set while the inventory is closed.
+    private static final int CLOSED = 1 << 31;
+
+    static {
+        assert Item.values().length < HALF : "Inventory has too many items to pack";
+    }
+
+    private volatile int word;
+
+    /**
+     * Create an inventory holding the given items, see Item.mask().
+     */
+    public Inventory(int items)
+    {
+        word = items & ITEMS;
+    }
+
+    /**
+     * Return the items carried, see Item.mask(). Items in transit are not carried.
+     */
+    public int get()
+    {
+        return word & ITEMS;
+    }
+
+    /**
+     * Return whether the given item is carried.
+     */
+    public boolean has(Item item)
+    {
+        return (word & item.bit()) != 0;
+    }
+
+    /**
+     * Return whether the inventory is closed.
+     */
+    public boolean isClosed()
+    {
+        return (word & CLOSED) != 0;
+    }
+
+    /**
+     * Close the inventory, so that it takes no more items. Items carried
+     * may still be removed or given.
+     */
+    public void close()
+    {
+        change(0, 0, 0, CLOSED);
+    }
+
+    /**
+     * Replace the items carried and open the inventory again. Only to be
+     * used while no item is in transit, such as when loading a game.
+     */
+    public void set(int items)
+    {
+        word = items & ITEMS;
+    }
+
+    /**
+     * Add an item out of nowhere, unless it is carried or in transit or
+     * the inventory is closed.
+     *
+     * @return true if the item was added.
+     */
+    public boolean add(Item item)
+    {
+        return change(CLOSED | item.bit() | item.bit() << HALF, 0, 0, item.bit());
+    }
+
+    /**
+     * Remove an item for good, if it is carried.
+     *
+     * @return true if the item was removed.
+     */
+    public boolean remove(Item item)
+    {
+        return change(item.bit(), item.bit(), item.bit(), 0);
+    }
+
+    /**
+     * Move an item from one inventory to another, if the giver carries it
+     * and the receiver neither carries it nor is closed.
+     *
+     * @return true if the item was moved.
+     *
+     * Pre-condition: none of the arguments are null.
+     */
+    public static boolean transfer(Inventory from, Inventory to, Item item)
+    {
+        assert from != null && to != null : "Inventory.transfer has null inventory";
+        assert item != null : "Inventory.transfer has null item";
+        if (from == to) {
+            return false;
+        }
+        int bit = item.bit();
+        if (!to.reserve(bit)) {
+            return false;
+        }
+        if (!from.hold(bit)) {
+            to.release(bit, false);
+            return false;
+        }
+        to.release(bit, true);
+        from.release(bit, false);
+        return true;
+    }
+
+    /**
+     * Swap two items between inventories: a gives one item to b and takes
+     * another from it, if each carries the item it gives and lacks the one
+     * it takes and neither is closed. Either both items move or neither does.
+     *
+     * @return true if the items were swapped.
+     *
+     * Pre-condition: none of the arguments are null and the items differ.
+     */
+    public static boolean swap(Inventory a, Item given, Inventory b, Item taken)
+    {
+        assert a != null && b != null : "Inventory.swap has null inventory";
+        assert given != null && taken != null && given != taken : "Inventory.swap has wrong items";
+        if (a == b) {
+            return false;
+        }
+        int give = given.bit();
+        int take = taken.bit();
+        if (!b.reserve(give)) {
+            return false;
+        }
+        if (!a.reserve(take)) {
+            b.release(give, false);
+            return false;
+        }
+        if (!a.hold(give)) {
+            a.release(take, false);
+            b.release(give, false);
+            return false;
+        }
+        if (!b.hold(take)) {
+            a.release(give, true);
+            a.release(take, false);
+            b.release(give, false);
+            return false;
+        }
+        b.release(give, true);
+        a.release(take, true);
+        a.release(give, false);
+        b.release(take, false);
+        return true;
+    }
+
+    /**
+     * Reserve the slot of an item to be received, if it is neither carried
+     * nor reserved and the inventory is open.
+     */
+    private boolean reserve(int bit)
+    {
+        return change(CLOSED | bit | bit << HALF, 0, 0, bit << HALF);
+    }
+
+    /**
+     * Take out an item to be given and reserve its slot, if it is carried.
+     */
+    private boolean hold(int bit)
+    {
+        return change(bit, bit, bit, bit << HALF);
+    }
+
+    /**
+     * Release the reservation of an item, putting the item in if keep is true.
+     */
+    private void release(int bit, boolean keep)
+    {
+        boolean released = change(bit << HALF, bit << HALF, bit << HALF, keep ? bit : 0);
+        assert released : "Inventory.release without a reservation";
+    }
+
+    /**
+     * Clear and set bits of the word if the bits looked at have the
+     * expected value, retrying while other bits change under it.
+     *
+     * @param mask     The bits looked at.
+     * @param expected The value the bits looked at must have.
+     * @param clear    The bits cleared.
+     * @param set      The bits set.
+     * @return false if the bits looked at do not have the expected value.
+     */
+    private boolean change(int mask, int expected, int clear, int set)
+    {
+        for (;;) {
+            int current = word;
+            if ((current & mask) != expected) {
+                return false;
+            }
+            if (WORD.compareAndSet(this, current, current & ~clear | set)) {
+                return true;
+            }
+        }
+    }
+
+    public String toString()
+    {
+        return Item.describe(get());
+    }
+}
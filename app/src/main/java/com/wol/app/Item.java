@@ -7,6 +7,7 @@ public enum Item
     SANDWICH("sandwich"), CRISPS("crisps"), DRINK("drink");    
 
     private String description;    
+    private static final Item[] ITEMS = values();
 
     /**
      * Constructor with description and weight.
@@ -35,4 +36,56 @@ public enum Item
     {
         return description;
     }
+    
+    /**
+     * Return the bit representing this item in an item mask.
+     */
+    public int bit()
+    {
+        return 1 << ordinal();
+    }
+    
+    /**
+     * Return the item of the lowest bit of a mask, or null if it is empty.
+     */
+    public static Item lowest(int mask)
+    {
+        return mask == 0 ? null : ITEMS[Integer.numberOfTrailingZeros(mask)];
+    }
+    
+    /**
+     * Return the item mask holding the given items.
+     */
+    public static int mask(Item... items)
+    {
+        int mask = 0;
+        for (Item item : items) {
+            mask |= item.bit();
+        }
+        return mask;
+    }
+    
+    /**
+     * Return the descriptions of the items in a mask, separated by commas.
+     */
+    public static String describe(int mask)
+    {
+        return describe(mask, new StringBuilder()).toString();
+    }
+    
+    /**
+     * Append the descriptions of the items in a mask, separated by commas.
+     *
+     * @return The given builder.
+     */
+    public static StringBuilder describe(int mask, StringBuilder out)
+    {
+        for (int m = mask; m != 0; m &= m - 1) {
+            if (m != mask) {
+                out.append(", ");
+            }
+            out.append(ITEMS[Integer.numberOfTrailingZeros(m)].description);
+        }
+        return out;
+    }
 }
@@ -0,0 +1,288 @@
+package com.wol.app;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A load generator issuing the commands of many bots at a target rate. <br/>
+ *
+ * Each bot plays one game after another through Commands, without parsing
+ * text. The bots are spread over a thread per processor, and each thread
+ * issues the commands of its bots in turn on a fixed schedule, so the
+ * threads together issue the target number of commands per second. The
+ * latency of a command is measured from when the schedule said it should
+ * be issued, so a stall delaying the commands behind it counts against
+ * all of them; the service time is measured from when it was issued.
+ * With a rate of 0 the commands are issued as fast as they are processed.
+ */
+public class LoadGenerator
+{
+    private final World world;
+    private final Bot bot;
+    private final int bots;
+    private final double rate;
+    private final long seed;
+    private final Parser parser; // parse() keeps no state, so sessions share it
+
+    /**
+     * Create a load generator.
+     *
+     * @param world The world the bots play on.
+     * @param bot   The strategy of every bot, see Bots.
+     * @param bots  The number of bots playing at once.
+     * @param rate  The commands per second to issue over all bots, 0 for as many as possible.
+     * @param seed  The seed from which the games and bots draw.
+     *
+     * Pre-condition: world and bot are not null, bots is positive and rate is not negative.
+     */
+    public LoadGenerator(World world, Bot bot, int bots, double rate, long seed)
+    {
+        assert world != null : "LoadGenerator.LoadGenerator has null world";
+        assert bot != null : "LoadGenerator.LoadGenerator has null bot";
+        assert bots > 0 : "LoadGenerator.LoadGenerator has no bots";
+        assert rate >= 0 : "LoadGenerator.LoadGenerator has negative rate";
+        this.world = world;
+        this.bot   = bot;
+        this.bots  = bots;
+        this.rate  = rate;
+        this.seed  = seed;
+        parser = new Parser(new ByteArrayInputStream(new byte[0]));
+    }
+
+    /**
+     * Issue commands for the given time and report what happened.
+     *
+     * Pre-condition: seconds is positive.
+     */
+    public Report run(double seconds)
+    {
+        assert seconds > 0 : "LoadGenerator.run has no time";
+        int threads = Math.min(bots, Runtime.getRuntime().availableProcessors());
+        Metrics.Histogram latency = new Metrics.Histogram("latency");
+        Metrics.Histogram service = new Metrics.Histogram("service");
+        Worker[] workers = new Worker[threads];
+        Thread[] running = new Thread[threads];
+        long interval = rate == 0 ? 0 : (long) (1e9 * threads / rate);
+        for (int i = 0; i < threads; i++) {
+            // Thread i plays bots i, i + threads, ...
+            int mine = bots / threads + (i < bots % threads ? 1 : 0);
+            workers[i] = new Worker(i, mine, threads, interval, latency, service);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            workers[i].start = start;
+            workers[i].end   = start + (long) (seconds * 1e9);
+            running[i] = new Thread(workers[i], "bot-" + i);
+            running[i].start();
+        }
+        for (Thread thread : running) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while generating load", e);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long sessions = 0;
+        long wins = 0;
+        for (Worker worker : workers) {
+            sessions += worker.sessions;
+            wins     += worker.wins;
+        }
+        return new Report(bots, rate, elapsed, sessions, wins, latency, service);
+    }
+
+    /**
+     * The bots of one thread.
+     */
+    private class Worker implements Runnable
+    {
+        private final Game[] games;
+        private final GameMain[] uis;
+        private final SplittableRandom[] randoms;
+        private final long interval;
+        private final Metrics.Histogram latency;
+        private final Metrics.Histogram service;
+        private long start; // when the first command is scheduled
+        private long end;   // when the last command may be scheduled
+        private long sessions; // games finished or abandoned
+        private long wins;
+
+        Worker(int first, int count, int step, long interval,
+               Metrics.Histogram latency, Metrics.Histogram service)
+        {
+            games    = new Game[count];
+            uis      = new GameMain[count];
+            randoms  = new SplittableRandom[count];
+            for (int i = 0; i < count; i++) {
+                randoms[i] = new SplittableRandom(seed + first + (long) i * step);
+                newGame(i);
+            }
+            this.interval = interval;
+            this.latency  = latency;
+            this.service  = service;
+        }
+
+        private void newGame(int i)
+        {
+            games[i] = new Game(world, randoms[i].nextLong());
+            uis[i]   = new GameMain(games[i], parser);
+        }
+
+        public void run()
+        {
+            for (long issued = 0; ; issued++) {
+                long scheduled = start + issued * interval;
+                long now = System.nanoTime();
+                if (scheduled >= end || now >= end) {
+                    return;
+                }
+                if (scheduled > now) {
+                    LockSupport.parkNanos(scheduled - now);
+                    now = System.nanoTime();
+                }
+                int i = (int) (issued % games.length);
+                Game game = games[i];
+                Command command = bot.next(game, randoms[i]);
+                if (command != null) {
+                    command.execute(uis[i], game);
+                }
+                long done = System.nanoTime();
+                service.add(done - now);
+                latency.add(done - (interval == 0 ? now : scheduled));
+                if (command == null || game.finished()) {
+                    sessions++;
+                    if (game.getOutcome() == Outcome.GOAL || game.getOutcome() == Outcome.MEAL) {
+                        wins++;
+                    }
+                    newGame(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * The figures of a run.
+     */
+    public static class Report
+    {
+        private final int bots;
+        private final double rate;
+        private final long elapsedNanos;
+        private final long sessions;
+        private final long wins;
+        private final Metrics.Histogram latency;
+        private final Metrics.Histogram service;
+
+        private Report(int bots, double rate, long elapsedNanos, long sessions, long wins,
+                       Metrics.Histogram latency, Metrics.Histogram service)
+        {
+            this.bots         = bots;
+            this.rate         = rate;
+            this.elapsedNanos = elapsedNanos;
+            this.sessions     = sessions;
+            this.wins         = wins;
+            this.latency      = latency;
+            this.service      = service;
+        }
+
+        /**
+         * Return the number of commands issued.
+         */
+        public long getCommands()
+        {
+            return latency.count();
+        }
+
+        /**
+         * Return the number of games finished or given up by their bots.
+         */
+        public long getSessions()
+        {
+            return sessions;
+        }
+
+        /**
+         * Return the number of games won.
+         */
+        public long getWins()
+        {
+            return wins;
+        }
+
+        /**
+         * Return the commands issued per second.
+         */
+        public double commandsPerSecond()
+        {
+            return elapsedNanos == 0 ? 0.0 : getCommands() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Return the latencies of the commands in nanoseconds, measured
+         * from when they were scheduled.
+         */
+        public Metrics.Histogram getLatency()
+        {
+            return latency;
+        }
+
+        /**
+         * Return the service times of the commands in nanoseconds,
+         * measured from when they were issued.
+         */
+        public Metrics.Histogram getService()
+        {
+            return service;
+        }
+
+        /**
+         * Return a summary of the run, one line per figure.
+         */
+        public String toString()
+        {
+            return String.format(
+                "Bots:       %d%n" +
+                "Target:     %s%n" +
+                "Commands:   %d (%.0f/s)%n" +
+                "Sessions:   %d (%.2f%% won)%n" +
+                "Latency:    p50 %s, p90 %s, p99 %s, p99.9 %s, max %s%n" +
+                "Service:    p50 %s, p90 %s, p99 %s, p99.9 %s, max %s",
+                bots, rate == 0 ? "unlimited" : String.format("%.0f/s", rate),
+                getCommands(), commandsPerSecond(),
+                sessions, 100.0 * wins / Math.max(1, sessions),
+                micros(latency.percentile(0.5)), micros(latency.percentile(0.9)),
+                micros(latency.percentile(0.99)), micros(latency.percentile(0.999)), micros(latency.max()),
+                micros(service.percentile(0.5)), micros(service.percentile(0.9)),
+                micros(service.percentile(0.99)), micros(service.percentile(0.999)), micros(service.max()));
+        }
+
+        private static String micros(long nanos)
+        {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+    }
+
+    /**
+     * Run bots on a world and print the report.
+     *
+     * @param args Bot ("random", "goal" or "collector"), number of bots,
+     *             commands per second (0 for unlimited), seconds, seed and
+     *             map file, all optional.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Bot bot        = Bots.named(args.length > 0 ? args[0] : "random");
+        int bots       = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        double rate    = args.length > 2 ? Double.parseDouble(args[2]) : 100000;
+        double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+        long seed      = args.length > 4 ? Long.parseLong(args[4]) : 0L;
+        World world    = args.length > 5 ? WorldLoader.load(Paths.get(args[5])) : World.london();
+
+        System.out.println(new LoadGenerator(world, bot, bots, rate, seed).run(seconds));
+    }
+}
@@ -0,0 +1,404 @@
+package com.wol.app;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * The counters and latency histograms of the game's hot paths. <br/>
+ *
+ * Metrics are on when the system property "wol.metrics" is "true". As
+ * ENABLED is a constant, the probes in the game compile away when metrics
+ * are off, leaving a check of a constant and no call to System.nanoTime().
+ * When on, the metrics are published through JMX as "com.wol.app:type=Metrics",
+ * and if the system property "wol.metrics.dump" names a file, a text dump
+ * is written to it when the program exits.
+ *
+ * Counters add into LongAdders and histograms into buckets of an atomic
+ * array, so threads recording at once do not block each other.
+ */
+public class Metrics
+{
+    // Whether the game records metrics.
+    public static final boolean ENABLED = Boolean.getBoolean("wol.metrics");
+    // The name the metrics are published under in JMX.
+    public static final String OBJECT_NAME = "com.wol.app:type=Metrics";
+
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+    private static final List<Histogram> HISTOGRAMS = new ArrayList<>();
+    private static final long START = System.nanoTime();
+
+    public static final Counter SESSIONS_STARTED  = counter("sessions.started");
+    public static final Counter SESSIONS_FINISHED = counter("sessions.finished");
+    public static final Counter WINS              = counter("sessions.won");
+    public static final Counter TIMEOUTS          = counter("sessions.timedOut");
+
+    public static final Histogram COMMAND          = histogram("command.process");
+    public static final Histogram GO_ROOM          = histogram("game.goRoom");
+    public static final Histogram MOVE_CHARACTERS  = histogram("game.moveCharacters");
+    public static final Histogram LONG_DESCRIPTION = histogram("room.getLongDescription");
+    public static final Histogram PARSE            = histogram("parser.parse");
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                System.err.println("Metrics are not published through JMX: " + e);
+            }
+            String dump = System.getProperty("wol.metrics.dump");
+            if (dump != null) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        Files.write(Paths.get(dump), dump().getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        System.err.println("Metrics are not dumped: " + e);
+                    }
+                }, "metrics-dump"));
+            }
+        }
+    }
+
+    private Metrics()
+    {
+    }
+
+    private static Counter counter(String name)
+    {
+        Counter counter = new Counter(name);
+        COUNTERS.add(counter);
+        return counter;
+    }
+
+    private static Histogram histogram(String name)
+    {
+        Histogram histogram = new Histogram(name);
+        HISTOGRAMS.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * Return the time to pass to Histogram.stop() at the end of what is
+     * measured, 0 if metrics are off.
+     */
+    public static long start()
+    {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Return the mean number of commands processed per second over the
+     * whole run of the program.
+     */
+    public static double meanCommandsPerSecond()
+    {
+        long elapsed = System.nanoTime() - START;
+        return elapsed == 0 ? 0.0 : COMMAND.count() * 1e9 / elapsed;
+    }
+
+    /**
+     * Return all metrics as text, one per line.
+     */
+    public static String dump()
+    {
+        StringBuilder out = new StringBuilder();
+        for (Counter counter : COUNTERS) {
+            out.append(counter).append('\n');
+        }
+        out.append(String.format("%-24s %12.1f%n", "commands/s (mean)", meanCommandsPerSecond()));
+        out.append(String.format("%-24s %10s %10s %10s %10s %10s %10s%n",
+            "Latency (ns)", "Count", "Mean", "p50", "p99", "p99.9", "Max"));
+        for (Histogram histogram : HISTOGRAMS) {
+            out.append(histogram).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * A count of events.
+     */
+    public static class Counter
+    {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+
+        Counter(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Count an event if metrics are on.
+         */
+        public void increment()
+        {
+            if (ENABLED) {
+                count.increment();
+            }
+        }
+
+        /**
+         * Count the given number of events if metrics are on.
+         */
+        public void add(long events)
+        {
+            if (ENABLED) {
+                count.add(events);
+            }
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Return the number of events counted.
+         */
+        public long get()
+        {
+            return count.sum();
+        }
+
+        public String toString()
+        {
+            return String.format("%-24s %12d", name, get());
+        }
+    }
+
+    /**
+     * A histogram of latencies in nanoseconds, with buckets of 1/16 of a
+     * power of two, so every latency is kept to within 6.25% however long
+     * it is, in a fixed array of buckets.
+     */
+    public static class Histogram
+    {
+        // Bits of a value below its highest bit that select its bucket.
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        // Values below this have a bucket each.
+        private static final int LINEAR = 2 * SUB_BUCKETS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Return the bucket of a value.
+         */
+        static int bucket(long value)
+        {
+            if (value < LINEAR) {
+                return (int) value;
+            }
+            int shift = 64 - Long.numberOfLeadingZeros(value) - (SUB_BITS + 1);
+            return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+        }
+
+        /**
+         * Return the largest value of a bucket.
+         */
+        static long highest(int bucket)
+        {
+            if (bucket < LINEAR) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long low = bucket % SUB_BUCKETS + SUB_BUCKETS;
+            return ((low + 1) << shift) - 1;
+        }
+
+        /**
+         * Record the time since start, taken by Metrics.start(), if metrics are on.
+         */
+        public void stop(long start)
+        {
+            if (ENABLED) {
+                add(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Record a value.
+         *
+         * Pre-condition: value is not negative.
+         */
+        public void add(long value)
+        {
+            assert value >= 0 : "Histogram.add gets negative value";
+            buckets.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Return the number of values recorded.
+         */
+        public long count()
+        {
+            return count.sum();
+        }
+
+        /**
+         * Return the mean of the values recorded, 0 if there are none.
+         */
+        public double mean()
+        {
+            long count = count();
+            return count == 0 ? 0.0 : (double) sum.sum() / count;
+        }
+
+        /**
+         * Return the largest value recorded, 0 if there are none.
+         */
+        public long max()
+        {
+            return max.get();
+        }
+
+        /**
+         * Return a value that the given fraction of the values recorded do
+         * not exceed, rounded up to the end of its bucket but not beyond
+         * the largest value.
+         *
+         * Pre-condition: 0 <= fraction <= 1.
+         */
+        public long percentile(double fraction)
+        {
+            assert 0 <= fraction && fraction <= 1 : "Histogram.percentile has wrong fraction";
+            long rank = (long) Math.ceil(fraction * count());
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += buckets.get(bucket);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(highest(bucket), max());
+                }
+            }
+            return max();
+        }
+
+        public String toString()
+        {
+            return String.format("%-24s %10d %10.0f %10d %10d %10d %10d", name, count(), mean(),
+                percentile(0.5), percentile(0.99), percentile(0.999), max());
+        }
+    }
+
+    /**
+     * The metrics as JMX attributes: each counter under its name, and the
+     * count, mean, percentiles and maximum of each histogram under its
+     * name followed by ".count", ".mean", ".p50", ".p99", ".p999" and ".max".
+     * The attributes and their types are fixed when the bean is made, so
+     * describing the bean reads no metric.
+     */
+    private static class Bean implements DynamicMBean
+    {
+        private final Map<String, Supplier<Object>> attributes = new LinkedHashMap<>();
+        private final List<MBeanAttributeInfo> infos = new ArrayList<>();
+        private final MBeanInfo info;
+
+        Bean()
+        {
+            for (Counter counter : COUNTERS) {
+                put(counter.getName(), Long.class, counter::get);
+            }
+            put("meanCommandsPerSecond", Double.class, Metrics::meanCommandsPerSecond);
+            for (Histogram histogram : HISTOGRAMS) {
+                String name = histogram.getName();
+                put(name + ".count", Long.class, histogram::count);
+                put(name + ".mean", Double.class, histogram::mean);
+                put(name + ".p50", Long.class, () -> histogram.percentile(0.5));
+                put(name + ".p99", Long.class, () -> histogram.percentile(0.99));
+                put(name + ".p999", Long.class, () -> histogram.percentile(0.999));
+                put(name + ".max", Long.class, histogram::max);
+            }
+            put("dump", String.class, Metrics::dump);
+            info = new MBeanInfo(Metrics.class.getName(), "Metrics of the World of London",
+                infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        /**
+         * Add a read-only attribute of the given type.
+         */
+        private void put(String name, Class<?> type, Supplier<Object> attribute)
+        {
+            attributes.put(name, attribute);
+            infos.add(new MBeanAttributeInfo(name, type.getName(), name, true, false, false));
+        }
+
+        public Object getAttribute(String name) throws AttributeNotFoundException
+        {
+            Supplier<Object> attribute = attributes.get(name);
+            if (attribute == null) {
+                throw new AttributeNotFoundException(name);
+            }
+            return attribute.get();
+        }
+
+        public AttributeList getAttributes(String[] names)
+        {
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                Supplier<Object> attribute = attributes.get(name);
+                if (attribute != null) {
+                    list.add(new Attribute(name, attribute.get()));
+                }
+            }
+            return list;
+        }
+
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+        {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        public AttributeList setAttributes(AttributeList list)
+        {
+            return new AttributeList();
+        }
+
+        public Object invoke(String action, Object[] parameters, String[] signature)
+            throws MBeanException, ReflectionException
+        {
+            throw new ReflectionException(new NoSuchMethodException(action), "The metrics have no operations");
+        }
+
+        public MBeanInfo getMBeanInfo()
+        {
+            return info;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.wol.app;
+/**
+ * The outcome of a game.
+ * A game is PLAYING until it finishes in one of the other ways.
+ */
+public enum Outcome
+{
+    PLAYING,
+    // The player reached the goal room.
+    GOAL,
+    // The player ate a full meal.
+    MEAL,
+    // The player ran out of time.
+    TIMEOUT,
+    // The player quit the game.
+    QUIT
+}
@@ -0,0 +1,54 @@
+package com.wol.app;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Where the answers of a game are written. <br/>
+ *
+ * Output written may be held back until flush() is called; flush() need
+ * not wait until the output has arrived. See AsyncOutput for a sink that
+ * writes on a thread of its own.
+ */
+public interface OutputSink extends Closeable
+{
+    /**
+     * Write a message.
+     *
+     * Pre-condition: message is not null.
+     */
+    void write(CharSequence message);
+
+    /**
+     * Send on everything written so far.
+     */
+    void flush();
+
+    /**
+     * Return a sink printing straight to a stream, flushing it on flush().
+     * Closing the sink does not close the stream.
+     *
+     * Pre-condition: out is not null.
+     */
+    static OutputSink of(PrintStream out)
+    {
+        assert out != null : "OutputSink.of has null stream";
+        return new OutputSink()
+        {
+            public void write(CharSequence message)
+            {
+                out.append(message);
+            }
+
+            public void flush()
+            {
+                out.flush();
+            }
+
+            public void close() throws IOException
+            {
+                out.flush();
+            }
+        };
+    }
+}
@@ -1,6 +1,9 @@
 package com.wol.app;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Scanner;
-import java.util.HashMap;
 
 /**
  * This class is part of the "World of London" application. 
@@ -14,27 +17,104 @@ import java.util.HashMap;
  * The parser has a set of known command words. It checks user input against
  * the known commands, and if the input is not one of the known commands, it
  * returns a command object that is marked as an unknown command.
+ *
+ * Words are read straight from the input characters and looked up in a
+ * perfect hash table of the known words, and every command is a shared
+ * instance from Commands, so parsing a CharSequence allocates nothing.
+ * Parsing the bytes of a ByteBuffer allocates one small view of them per
+ * line, which keeps parse() free of state, so threads may share a parser.
+ * Save and load commands naming a slot number or a name are made when
+ * parsed, and a name is copied out of the line.
  */
 public class Parser 
 {
+    // Kinds of known words, kept in the high bits of a word's code.
+    private static final int VERB = 1 << 8, DIRECTION = 2 << 8, ITEM = 3 << 8;
+    // Verbs, kept in the low bits of a verb's code.
+    private static final int GO = 0, TAKE = 1, HELP = 2, QUIT = 3, LOOK = 4, EAT = 5, RANDOM = 6,
+                             SAVE = 7, LOAD = 8, HINT = 9, GIVE = 10, TRADE = 11;
+    private static final String[] VERBS = {"go", "take", "help", "quit", "look", "eat", "random",
+                                           "save", "load", "hint", "give", "trade"};
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Item[] ITEMS = Item.values();
+    // The one-word commands, by verb.
+    private static final Command[] VERB_COMMANDS = {
+        Commands.unknown(), Commands.unknown(), Commands.help(), Commands.quit(), Commands.look(),
+        Commands.eat(), Commands.random(), Commands.save(), Commands.load(), Commands.hint(),
+        Commands.unknown(), Commands.trade()
+    };
+
+    // Perfect hash table of the known words: slot = hash(word) & (size - 1).
+    private static final String[] WORDS;
+    private static final int[] CODES;
+    private static final int MULTIPLIER;
+    static {
+        String[] known = new String[VERBS.length + Direction.values().length + Item.values().length];
+        int[] knownCodes = new int[known.length];
+        int n = 0;
+        for (int verb = 0; verb < VERBS.length; verb++, n++) {
+            known[n] = VERBS[verb];
+            knownCodes[n] = VERB | verb;
+        }
+        for (Direction direction : Direction.values()) {
+            known[n] = direction.toString();
+            knownCodes[n++] = DIRECTION | direction.ordinal();
+        }
+        for (Item item : Item.values()) {
+            known[n] = item.toString();
+            knownCodes[n++] = ITEM | item.ordinal();
+        }
+
+        // Search for a multiplier under which no two words share a slot.
+        int size = Integer.highestOneBit(known.length) * 4;
+        int m = 1;
+        String[] table;
+        while ((table = perfectTable(known, m, size)) == null) {
+            m += 2;
+            if (m > 1 << 16) {
+                m = 1;
+                size *= 2;
+            }
+        }
+        MULTIPLIER = m;
+        WORDS = table;
+        CODES = new int[size];
+        for (int i = 0; i < known.length; i++) {
+            CODES[hash(known[i], 0, known[i].length(), m) & (size - 1)] = knownCodes[i];
+        }
+    }
+
     private Scanner reader; // source of command input
-    private HashMap<String,Direction> directions;
-    private HashMap<String,Item> items;
+    private ReplayLog log;  // records the lines read, may be null
 
     /**
      * Create a parser to read from the terminal window.
      */
     public Parser()
     {
-        reader = new Scanner(System.in);
-        directions = new HashMap<String,Direction>();
-        for (Direction direction : Direction.values()) {
-            directions.put(direction.toString(), direction);
-        }
-        items = new HashMap<String,Item>();
-        for (Item item : Item.values()) {
-            items.put(item.toString(), item);
-        }
+        this(System.in);
+    }
+
+    /**
+     * Create a parser to read from the given input.
+     * 
+     * Pre-condition: in is not null.
+     */
+    public Parser(InputStream in)
+    {
+        assert in != null : "Parser.Parser gets null input";
+        reader = new Scanner(in);
+    }
+
+    /**
+     * Record every line read by getCommand() in the given log.
+     * 
+     * @param log The log, or null to stop recording.
+     */
+    public void setLog(ReplayLog log)
+    {
+        this.log = log;
     }
 
     /**
@@ -42,62 +122,233 @@ public class Parser
      */
     public Command getCommand() 
     {
-        String inputLine;   // will hold the full input line
-        String word = null;
-
         System.out.print("\n> ");     // print prompt
+        return readCommand();
+    }
+
+    /**
+     * @return The next command from the user, read without a prompt.
+     */
+    public Command readCommand()
+    {
+        String inputLine = reader.nextLine();
+        if (log != null) {
+            try {
+                log.record(inputLine);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return parse(inputLine);
+    }
 
-        inputLine = reader.nextLine();
+    /**
+     * Interpret a line of input as a command.
+     * Only the first two words are looked at; the rest of the line is ignored.
+     * 
+     * @param inputLine The line to interpret, for example a String or a
+     *                  CharBuffer.
+     * @return The command on the line.
+     * 
+     * Pre-condition: inputLine is not null.
+     */
+    public Command parse(CharSequence inputLine)
+    {
+        assert inputLine != null : "Parser.parse gets null line";
+        long start = Metrics.start();
+        Command command = interpret(inputLine);
+        Metrics.PARSE.stop(start);
+        return command;
+    }
+
+    /**
+     * Return the command on a line, see parse().
+     */
+    private Command interpret(CharSequence inputLine)
+    {
+        int length = inputLine.length();
 
         // Find up to two words on the line.
-        Scanner tokenizer = new Scanner(inputLine);
-        if(tokenizer.hasNext()) {
-            word = tokenizer.next();      // get first word
-            switch (word) {
-                case "go" : 
-        			Direction direction = parseEnum(tokenizer,directions);
-                    if (direction != null) 
-                    	return (GameMain ui, Game game) -> game.goRoom(direction, false);
-                    break;
-                case "take" : 
-        			Item item = parseEnum(tokenizer,items);
-                    if (item != null) 
-                    	return (GameMain ui, Game game) -> game.take(item);
-                    break;
+        int start = skipSpaces(inputLine, 0);
+        if (start == length) {
+            return Commands.unknown();
+        }
+        int end  = skipWord(inputLine, start);
+        int verb = lookup(inputLine, start, end);
+        if ((verb & ~0xFF) != VERB) {
+            return Commands.unknown();
+        }
+        verb &= 0xFF;
+        if (verb == GO || verb == TAKE || verb == GIVE) {
+            start = skipSpaces(inputLine, end);
+            int argument = lookup(inputLine, start, skipWord(inputLine, start));
+            if (verb == GO && (argument & ~0xFF) == DIRECTION) {
+                return Commands.go(DIRECTIONS[argument & 0xFF]);
+            }
+            if (verb == TAKE && (argument & ~0xFF) == ITEM) {
+                return Commands.take(ITEMS[argument & 0xFF]);
             }
-            
-            // close tokenizer to avoid Resource leak as we no longer need to check for two words
-            tokenizer.close();
-            
-            switch (word) {
-                case "help" :   return (GameMain ui, Game game) -> game.help() + ui.getCommands();
-                case "quit" :   return (GameMain ui, Game game) -> game.quit();
-                case "look" :   return (GameMain ui, Game game) -> game.look();
-                case "eat"    : return (GameMain ui, Game game) -> game.eat();
-                case "random" : return (GameMain ui, Game game) -> game.goRoom(null, true);
+            if (verb == GIVE && (argument & ~0xFF) == ITEM) {
+                return Commands.give(ITEMS[argument & 0xFF]);
             }
-            // NOTE: rest of the input line is ignore.
         }
-        return (GameMain ui, Game game) -> "I do not understand this command.";
+        if (verb == SAVE || verb == LOAD) {
+            start = skipSpaces(inputLine, end);
+            end = skipWord(inputLine, start);
+            int slot = number(inputLine, start, end);
+            if (slot >= 0) {
+                return verb == SAVE ? Commands.save(slot) : Commands.load(slot);
+            } else if (start < end) {
+                String name = inputLine.subSequence(start, end).toString();
+                return verb == SAVE ? Commands.save(name) : Commands.load(name);
+            }
+        }
+        return VERB_COMMANDS[verb];
     }
- 
+
     /**
-     * Parse an value of a type that is an Enum.
-     * The mapping from strings to values of the type is in the map.
-     * Pre-condition: tokenizer is not null and map is not null.
-     * If parsing fails, the result is null.
+     * Interpret the ASCII bytes of a buffer between two positions as a
+     * command, through a view of them rather than a copy.
+     * 
+     * @param buffer The buffer holding the line.
+     * @param from   The position of the first byte of the line.
+     * @param to     The position after the last byte of the line.
+     * @return The command on the line.
      */
-    private <T> T parseEnum(Scanner tokenizer, HashMap<String,T> map)
+    public Command parse(ByteBuffer buffer, int from, int to)
     {
-        assert tokenizer != null : "Parser.parseEnum gets null tokenizer";
-        assert map != null : "Parser.parseEnum gets null map";
-        
-        if (tokenizer.hasNext()) {
-            String word = tokenizer.next();
-            tokenizer.close();
-            return map.get(word);
+        return parse(new AsciiSequence(buffer, from, to));
+    }
+
+    /**
+     * Return the position of the first non-space at or after from.
+     */
+    private static int skipSpaces(CharSequence line, int from)
+    {
+        while (from < line.length() && java.lang.Character.isWhitespace(line.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Return the position of the first space at or after from.
+     */
+    private static int skipWord(CharSequence line, int from)
+    {
+        while (from < line.length() && !java.lang.Character.isWhitespace(line.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Return the number written in digits between two positions, or -1 if
+     * there are none, other characters or too many digits.
+     */
+    private static int number(CharSequence line, int from, int to)
+    {
+        if (from == to || to - from > 9) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Return the hash of the characters between two positions.
+     */
+    private static int hash(CharSequence line, int from, int to, int multiplier)
+    {
+        int h = to - from;
+        for (int i = from; i < to; i++) {
+            h = h * multiplier + line.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Return the table of the given words placed at their hash slots, or
+     * null if two words share a slot.
+     */
+    private static String[] perfectTable(String[] known, int multiplier, int size)
+    {
+        String[] table = new String[size];
+        for (String word : known) {
+            int slot = hash(word, 0, word.length(), multiplier) & (size - 1);
+            if (table[slot] != null) {
+                return null;
+            }
+            table[slot] = word;
+        }
+        return table;
+    }
+
+    /**
+     * Return the code of the known word between two positions, or 0 if the
+     * word is not known.
+     */
+    private static int lookup(CharSequence line, int from, int to)
+    {
+        int slot = hash(line, from, to, MULTIPLIER) & (WORDS.length - 1);
+        String word = WORDS[slot];
+        if (word == null || word.length() != to - from) {
+            return 0;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) != line.charAt(from + i)) {
+                return 0;
+            }
+        }
+        return CODES[slot];
+    }
+
+    /**
+     * The bytes of a buffer seen as characters, one per byte.
+     */
+    private static class AsciiSequence implements CharSequence
+    {
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int to;
+
+        AsciiSequence(ByteBuffer buffer, int from, int to)
+        {
+            this.buffer = buffer;
+            this.from   = from;
+            this.to     = to;
+        }
+
+        public int length()
+        {
+            return to - from;
+        }
+
+        public char charAt(int index)
+        {
+            return (char) (buffer.get(from + index) & 0xFF);
+        }
+
+        public CharSequence subSequence(int start, int end)
+        {
+            return new AsciiSequence(buffer, from + start, from + end);
+        }
+
+        public String toString()
+        {
+            StringBuilder result = new StringBuilder(length());
+            for (int i = 0; i < length(); i++) {
+                result.append(charAt(i));
+            }
+            return result.toString();
         }
-        return null;
     }
 
     /**
@@ -105,7 +356,8 @@ public class Parser
      */
     public String commands()
     {
-        return "go <direction>, look, take, eat, quit, help, random";
+        return "go <direction>, look, take <item>, give <item>, trade, eat, quit, help, random, hint, "
+            + "save [slot], load [slot]";
     }
 
     /**
@@ -0,0 +1,302 @@
+package com.wol.app;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * A simulation of many walkers wandering a world split into regions. <br/>
+ *
+ * Walkers are anonymous characters that take a random exit every tick.
+ * The rooms of the world are partitioned by Regions, and the walkers in
+ * each region are moved by a thread of the region's own, so the regions
+ * of a tick are simulated concurrently. A walker leaving its region
+ * through an exit is handed to the region it enters through a lock-free
+ * queue, and taken in by that region at the start of the next tick. Ticks
+ * are separated by a barrier.
+ *
+ * The draws of a walker only depend on the seed, the tick and the walker,
+ * so a simulation ends up the same however the world is partitioned.
+ */
+public class RegionSimulation
+{
+    private final World world;
+    private final Regions regions;
+    private final long seed;
+    private final int walkers;
+    private final Shard[] shards;
+    private int ticks; // ticks run so far
+
+    /**
+     * Create a simulation with walkers spread over random rooms.
+     *
+     * @param world   The world walked in.
+     * @param regions A partition of the world's rooms.
+     * @param walkers The number of walkers.
+     * @param seed    The seed from which all draws derive.
+     *
+     * Pre-condition: world and regions are not null, regions partitions
+     * world and walkers is not negative.
+     */
+    public RegionSimulation(World world, Regions regions, int walkers, long seed)
+    {
+        assert world != null : "RegionSimulation.RegionSimulation has null world";
+        assert regions != null : "RegionSimulation.RegionSimulation has null regions";
+        assert walkers >= 0 : "RegionSimulation.RegionSimulation has negative walkers";
+        this.world   = world;
+        this.regions = regions;
+        this.seed    = seed;
+        this.walkers = walkers;
+        shards = new Shard[regions.count()];
+        for (int region = 0; region < shards.length; region++) {
+            shards[region] = new Shard(region);
+        }
+        for (int walker = 0; walker < walkers; walker++) {
+            long bits = draw(-1, walker);
+            int room  = (int) (((bits >>> 32) * world.size()) >>> 32);
+            shards[regions.getRegion(room)].add(walker, room);
+        }
+    }
+
+    /**
+     * Return the random bits of a walker in a tick.
+     */
+    private long draw(int tick, int walker)
+    {
+        long base = TickScheduler.mix(seed + (tick + 1L) * 0xC2B2AE3D27D4EB4FL);
+        return TickScheduler.mix(base + (walker + 1L) * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Run the given number of ticks, each region on a thread of its own.
+     *
+     * Pre-condition: ticks is not negative.
+     */
+    public Report run(int ticks)
+    {
+        assert ticks >= 0 : "RegionSimulation.run gets negative ticks";
+        final int first = this.ticks;
+        final CyclicBarrier barrier = new CyclicBarrier(shards.length);
+        final Throwable[] failure = new Throwable[1];
+        long[] before = counts();
+
+        long start = System.nanoTime();
+        Thread[] threads = new Thread[shards.length];
+        for (int region = 0; region < shards.length; region++) {
+            final Shard shard = shards[region];
+            threads[region] = new Thread(() -> {
+                try {
+                    for (int tick = first; tick < first + ticks; tick++) {
+                        shard.tick(tick);
+                        barrier.await();
+                    }
+                } catch (InterruptedException | BrokenBarrierException | RuntimeException e) {
+                    synchronized (failure) {
+                        if (failure[0] == null) {
+                            failure[0] = e;
+                        }
+                    }
+                    barrier.reset();
+                }
+            }, "region-" + region);
+            threads[region].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while simulating", e);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (failure[0] != null) {
+            throw new IllegalStateException("A region failed", failure[0]);
+        }
+        this.ticks += ticks;
+
+        long[] after = counts();
+        return new Report(ticks, walkers, after[0] - before[0], after[1] - before[1], elapsed);
+    }
+
+    /**
+     * Return the moves and handoffs of all regions so far.
+     */
+    private long[] counts()
+    {
+        long[] counts = new long[2];
+        for (Shard shard : shards) {
+            counts[0] += shard.moves;
+            counts[1] += shard.handoffs;
+        }
+        return counts;
+    }
+
+    /**
+     * Return the number of walkers in each room, by room number.
+     */
+    public int[] occupancy()
+    {
+        int[] occupancy = new int[world.size()];
+        for (Shard shard : shards) {
+            for (int i = 0; i < shard.size; i++) {
+                occupancy[shard.rooms[i]]++;
+            }
+            for (long walker : shard.inbox(ticks)) {
+                occupancy[(int) walker]++;
+            }
+        }
+        return occupancy;
+    }
+
+    /**
+     * The walkers of one region, moved by one thread.
+     */
+    private class Shard
+    {
+        private final int region;
+        private int[] ids   = new int[16];
+        private int[] rooms = new int[16];
+        private int size;
+        // Walkers handed over for even and odd ticks, as id << 32 | room.
+        private final ConcurrentLinkedQueue<Long> even = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<Long> odd  = new ConcurrentLinkedQueue<>();
+        private long moves;
+        private long handoffs;
+
+        Shard(int region)
+        {
+            this.region = region;
+        }
+
+        /**
+         * Return the inbox of the walkers handed over for a tick.
+         */
+        ConcurrentLinkedQueue<Long> inbox(int tick)
+        {
+            return (tick & 1) == 0 ? even : odd;
+        }
+
+        void add(int id, int room)
+        {
+            if (size == ids.length) {
+                ids   = Arrays.copyOf(ids, size * 2);
+                rooms = Arrays.copyOf(rooms, size * 2);
+            }
+            ids[size]   = id;
+            rooms[size] = room;
+            size++;
+        }
+
+        /**
+         * Take in the walkers handed over for a tick and move all walkers
+         * of the region. Walkers are handed over for the next tick, whose
+         * inbox no region reads during this one.
+         */
+        void tick(int tick)
+        {
+            for (Long walker; (walker = inbox(tick).poll()) != null; ) {
+                add((int) (walker >>> 32), (int) (long) walker);
+            }
+            for (int i = 0; i < size; i++) {
+                int target = world.randomExit(rooms[i], draw(tick, ids[i]));
+                if (target == World.NO_ROOM) {
+                    continue;
+                }
+                moves++;
+                int to = regions.getRegion(target);
+                if (to == region) {
+                    rooms[i] = target;
+                } else {
+                    shards[to].inbox(tick + 1).offer((long) ids[i] << 32 | target);
+                    handoffs++;
+                    size--;
+                    ids[i]   = ids[size];
+                    rooms[i] = rooms[size];
+                    i--; // the walker moved here has not moved yet
+                }
+            }
+        }
+    }
+
+    /**
+     * The figures of a run.
+     */
+    public static class Report
+    {
+        private final int ticks;
+        private final int walkers;
+        private final long moves;
+        private final long handoffs;
+        private final long elapsedNanos;
+
+        private Report(int ticks, int walkers, long moves, long handoffs, long elapsedNanos)
+        {
+            this.ticks        = ticks;
+            this.walkers      = walkers;
+            this.moves        = moves;
+            this.handoffs     = handoffs;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Return the number of moves made.
+         */
+        public long getMoves()
+        {
+            return moves;
+        }
+
+        /**
+         * Return the number of moves that crossed from one region into another.
+         */
+        public long getHandoffs()
+        {
+            return handoffs;
+        }
+
+        /**
+         * Return the number of ticks run per second.
+         */
+        public double ticksPerSecond()
+        {
+            return elapsedNanos == 0 ? 0.0 : ticks * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Return a summary of the run, one line per figure.
+         */
+        public String toString()
+        {
+            return String.format(
+                "Ticks:      %d%n" +
+                "Walkers:    %d%n" +
+                "Moves:      %d%n" +
+                "Handoffs:   %.2f%%%n" +
+                "Throughput: %.0f ticks/s",
+                ticks, walkers, moves,
+                100.0 * handoffs / Math.max(1, moves),
+                ticksPerSecond());
+        }
+    }
+
+    /**
+     * Run walkers on a world and print the report.
+     *
+     * @param args Number of walkers, regions, ticks, seed and map file, all optional.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        World world  = args.length > 4 ? WorldLoader.load(Paths.get(args[4])) : World.london();
+        int walkers  = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int count    = args.length > 1 ? Integer.parseInt(args[1])
+                                       : Math.min(Runtime.getRuntime().availableProcessors(), world.size());
+        int ticks    = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long seed    = args.length > 3 ? Long.parseLong(args[3]) : 0L;
+
+        Regions regions = Regions.partition(world, count);
+        System.out.println(new RegionSimulation(world, regions, walkers, seed).run(ticks));
+    }
+}
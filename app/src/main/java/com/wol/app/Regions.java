@@ -0,0 +1,122 @@
+package com.wol.app;
+import java.util.Arrays;
+
+/**
+ * A partition of the rooms of a world into regions. <br/>
+ *
+ * Regions are grown breadth-first from rooms spread evenly over the room
+ * numbers, one step at a time for all regions, so they come out connected
+ * and of similar size on worlds whose exits link nearby rooms. Rooms not
+ * reached from any of those starting rooms are assigned to the smallest
+ * region from the first such room on.
+ */
+public class Regions
+{
+    private final int[] regions; // region by room
+    private final int[] sizes;   // rooms by region
+
+    private Regions(int[] regions, int[] sizes)
+    {
+        this.regions = regions;
+        this.sizes   = sizes;
+    }
+
+    /**
+     * Split the rooms of a world into the given number of regions.
+     *
+     * Pre-condition: world is not null and 0 < count <= world.size().
+     */
+    public static Regions partition(World world, int count)
+    {
+        assert world != null : "Regions.partition has null world";
+        assert 0 < count && count <= world.size() : "Regions.partition has wrong count";
+        int rooms = world.size();
+        int[] regions = new int[rooms];
+        Arrays.fill(regions, -1);
+        int[] sizes = new int[count];
+        int[] queue = new int[rooms]; // rooms in order of assignment
+        int tail = 0;
+
+        for (int region = 0; region < count; region++) {
+            int room = (int) ((long) region * rooms / count);
+            regions[room] = region;
+            sizes[region]++;
+            queue[tail++] = room;
+        }
+        int head = 0;
+        int next = 0; // first room that may be unassigned
+        while (tail < rooms) {
+            if (head == tail) {
+                // Start the smallest region again from an unreached room.
+                while (regions[next] != -1) {
+                    next++;
+                }
+                int smallest = 0;
+                for (int region = 1; region < count; region++) {
+                    if (sizes[region] < sizes[smallest]) {
+                        smallest = region;
+                    }
+                }
+                regions[next] = smallest;
+                sizes[smallest]++;
+                queue[tail++] = next;
+            }
+            int room = queue[head++];
+            for (Direction direction : Direction.values()) {
+                int neighbor = world.getExit(room, direction);
+                if (neighbor != World.NO_ROOM && regions[neighbor] == -1) {
+                    regions[neighbor] = regions[room];
+                    sizes[regions[room]]++;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return new Regions(regions, sizes);
+    }
+
+    /**
+     * Return the number of regions.
+     */
+    public int count()
+    {
+        return sizes.length;
+    }
+
+    /**
+     * Return the region of a room.
+     *
+     * Pre-condition: the room is a room of the partitioned world.
+     */
+    public int getRegion(int room)
+    {
+        return regions[room];
+    }
+
+    /**
+     * Return the number of rooms in a region.
+     *
+     * Pre-condition: 0 <= region < count().
+     */
+    public int size(int region)
+    {
+        return sizes[region];
+    }
+
+    /**
+     * Return the number of exits of a world leading from one region into
+     * another, each of which hands characters over between regions.
+     */
+    public int boundary(World world)
+    {
+        int boundary = 0;
+        for (int room = 0; room < regions.length; room++) {
+            for (Direction direction : Direction.values()) {
+                int neighbor = world.getExit(room, direction);
+                if (neighbor != World.NO_ROOM && regions[neighbor] != regions[room]) {
+                    boundary++;
+                }
+            }
+        }
+        return boundary;
+    }
+}
@@ -0,0 +1,101 @@
+package com.wol.app;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only log of one game, from which the game can be replayed
+ * exactly, see Replayer. <br/>
+ *
+ * The log starts with a header holding the seed of the game, followed by
+ * one record per command: the command's words as an unsigned 16-bit
+ * length and UTF-8 bytes. Only the first two words of a line are kept,
+ * as the parser ignores the rest. Records are collected in a buffer and
+ * written to the file in batches, when the buffer is full, on flush()
+ * and on close().
+ */
+public class ReplayLog implements Closeable
+{
+    // "WOLR", the first int of every replay log.
+    static final int MAGIC = 0x574F4C52;
+    static final int VERSION = 3;
+    // Records are batched in a buffer of this size.
+    private static final int CHUNK = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Create a log for a game with the given seed, replacing the file if it exists.
+     *
+     * @param path The log file.
+     * @param seed The seed of the game, see Game.getSeed().
+     * @throws IOException if the file cannot be written.
+     */
+    public ReplayLog(Path path, long seed) throws IOException
+    {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(CHUNK);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(seed);
+    }
+
+    /**
+     * Record a line of input.
+     *
+     * @param line The line as typed.
+     * @throws IOException if a full batch cannot be written.
+     *
+     * Pre-condition: line is not null.
+     */
+    public void record(String line) throws IOException
+    {
+        assert line != null : "ReplayLog.record gets null line";
+        byte[] bytes = words(line).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        if (buffer.remaining() < 2 + length) {
+            flush();
+        }
+        buffer.putShort((short) length);
+        buffer.put(bytes, 0, length);
+    }
+
+    /**
+     * Return the first two words of a line, separated by a space.
+     */
+    private static String words(String line)
+    {
+        String[] words = line.trim().split("\\s+", 3);
+        return words.length < 2 ? words[0] : words[0] + " " + words[1];
+    }
+
+    /**
+     * Write all recorded lines to the file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public void flush() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Write all recorded lines and close the file.
+     */
+    public void close() throws IOException
+    {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.wol.app;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replays a game from its ReplayLog. <br/>
+ *
+ * The replayer creates the game with the seed of the log and feeds it the
+ * logged commands, so that it goes through exactly the same states as the
+ * logged game. Nothing is printed, so a game can be fast-forwarded to any
+ * tick of its clock far quicker than it was played.
+ */
+public class Replayer
+{
+    private final ByteBuffer log;
+    private final Game game;
+    private final GameMain ui;
+    private final Parser parser;
+    private int commands;
+
+    /**
+     * Create a replayer for a logged game on the given world.
+     *
+     * @param path  The log file.
+     * @param world The world the logged game was played on.
+     * @throws IOException if the file cannot be read or is not a replay log.
+     */
+    public Replayer(Path path, World world) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (log.remaining() < 16 || log.getInt() != ReplayLog.MAGIC
+                || log.getInt() != ReplayLog.VERSION) {
+            throw new IOException(path + " is not a version " + ReplayLog.VERSION + " replay log");
+        }
+        game   = new Game(world, log.getLong());
+        parser = new Parser(new ByteArrayInputStream(new byte[0]));
+        ui     = new GameMain(game, parser);
+    }
+
+    /**
+     * Return the replayed game.
+     */
+    public Game getGame()
+    {
+        return game;
+    }
+
+    /**
+     * Return the number of commands replayed so far.
+     */
+    public int getCommands()
+    {
+        return commands;
+    }
+
+    /**
+     * Return whether there are logged commands left to replay.
+     */
+    public boolean hasNext()
+    {
+        return log.remaining() >= 2;
+    }
+
+    /**
+     * Replay the next logged command.
+     *
+     * @return The message of the command to the player.
+     *
+     * Pre-condition: hasNext().
+     */
+    public String step()
+    {
+        assert hasNext() : "Replayer.step has no command left";
+        int length = log.getShort() & 0xFFFF;
+        int from   = log.position();
+        log.position(from + length);
+        commands++;
+        return parser.parse(log, from, from + length).process(ui, game);
+    }
+
+    /**
+     * Replay logged commands until the game's clock reaches the given
+     * tick, the game finishes or the log ends.
+     *
+     * @param tick The time to stop at, see Game.getTime().
+     * @return The game.
+     */
+    public Game fastForward(int tick)
+    {
+        while (game.getTime() < tick && !game.finished() && hasNext()) {
+            step();
+        }
+        return game;
+    }
+
+    /**
+     * Fast-forward a logged game and print where the player is.
+     *
+     * @param args The log file, optionally the tick to stop at and the map
+     *             file the game was played on.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1) {
+            System.err.println("Usage: Replayer <log file> [tick] [map file]");
+            return;
+        }
+        int tick    = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+        World world = args.length > 2 ? WorldLoader.load(Paths.get(args[2])) : World.london();
+
+        Replayer replayer = new Replayer(Paths.get(args[0]), world);
+        Game game = replayer.fastForward(tick);
+        System.out.println("After " + replayer.getCommands() + " commands, at time " + game.getTime() + ":");
+        System.out.println(game.look());
+    }
+}
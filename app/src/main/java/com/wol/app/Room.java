@@ -1,10 +1,8 @@
 package com.wol.app;
 import java.util.Set;
-import java.util.Map;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
 
 /**
  * Class Room - a room in a game.
@@ -13,29 +11,46 @@ import java.util.Collections;
  * "World of London" is a very simple, text based travel game.  
  *
  * A "Room" represents one location in the scenery of the game.  It is 
- * connected to other rooms via exits.  For each existing exit, the room 
- * stores a reference to the neighboring room.
+ * connected to other rooms via exits.
+ *
+ * A room is a thin view of one room number of a game's board: its
+ * description and exits are kept in the World, and its characters are
+ * the characters of the board whose room it is. Two views of the same
+ * room are equal.
  */
 public class Room 
 {
-    private String description;
-    private Map<Direction, Room> exits;  // stores exits of this room.
-    private Set<Character> chars;  // stores the characters that are in this room.
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Board board;
+    private final int id;
 
     /**
      * Create a room described "description". Initially, it has
      * no exits. "description" is something like "a kitchen" or
      * "an open court yard".
+     * 
+     * The room is the only room of a world of its own, so its exits may
+     * only lead to itself.
+     * 
      * @param description The room's description.
      * Pre-condition: description is not null.
      */
     public Room(String description)
     {
-        assert description != null : "Room.Room has null description";
-        this.description = description;
-        exits = new HashMap<Direction, Room>();
-        chars = new HashSet<Character>();
-        sane();
+        this(new Board(World.single(description), new SplittableRandom()), 0);
+    }
+
+    /**
+     * Create a view of a room of a board.
+     * 
+     * Pre-condition: 0 <= id < board.getWorld().size().
+     */
+    Room(Board board, int id)
+    {
+        assert 0 <= id && id < board.getWorld().size() : "Room.Room has no such room";
+        this.board = board;
+        this.id    = id;
     }
 
     /**
@@ -46,25 +61,38 @@ public class Room
         assert getShortDescription() != null : "Room has no short description" ;
         assert getLongDescription() != null : "Room has no long description" ;
     }
+
+    /**
+     * @return The number of the room in its world.
+     */
+    public int getId()
+    {
+        return id;
+    }
    
     /**
-     * Define an exit from this room.
+     * Define an exit from a room made by Room(String), whose world is its
+     * own. The rooms of a game's world are never changed, as the world is
+     * shared by other games; their exits are set while it is loaded.
      * 
      * @param direction The direction of the exit.
      * @param neighbor  The room to which the exit leads.
      * 
      * Pre-condition: neither direction nor neighbor are null; 
-     * there is no room in given direction yet.
+     * there is no room in given direction yet;
+     * neighbor is a room of the same world, made by Room(String).
      */
-    public void setExit(Direction direction, Room neighbor) 
+    void setExit(Direction direction, Room neighbor) 
     {
         assert direction != null : "Room.setExit gets null direction";
         assert neighbor != null : "Room.setExit gets null neighbor";
+        assert neighbor.board == board : "Room.setExit gets neighbor of another world";
         assert getExit(direction) == null : "Room.setExit set for direction that has neighbor";
         sane();
-        exits.put(direction, neighbor);
+        board.getWorld().setExit(id, direction, neighbor.id);
+        invalidate();
         sane();
-        assert getExit(direction) == neighbor : "Room.setExit has wrong neighbor";
+        assert neighbor.equals(getExit(direction)) : "Room.setExit has wrong neighbor";
     }
 
     /**
@@ -73,7 +101,7 @@ public class Room
      */
     public String getShortDescription()
     {
-        return description;
+        return board.getWorld().getDescription(id);
     }
    
     /**
@@ -81,27 +109,63 @@ public class Room
      *     You are in the kitchen.
      *     Items: map
      *     Exits: north west
+     * The description is rendered again only after the room's exits,
+     * characters or their items have changed.
      * @return A long description of this room
      */
     public String getLongDescription()
     {
-        return "You are " + description + ".\n" + getExitString() + getCharacterString();
+        long start = Metrics.start();
+        String description = board.getDescription(id);
+        if (description == null) {
+            description = appendLongDescription(board.renderer()).toString();
+            board.setDescription(id, description);
+        }
+        Metrics.LONG_DESCRIPTION.stop(start);
+        return description;
     }
 
     /**
-     * Return a string describing the room's exits, for example
-     * "Exits: north west".
-     * 
-     * @return Details of the room's exits.
+     * Append the long description of the room, see getLongDescription().
+     *
+     * @param out The builder to append to.
+     * @return The given builder.
      */
-    private String getExitString()
+    public StringBuilder appendLongDescription(StringBuilder out)
     {
-        String returnString = "Exits:";
-        Set<Direction> keys = exits.keySet();
-        for(Direction exit : keys) {
-            returnString += " " + exit;
+        World world = board.getWorld();
+        out.append("You are ").append(world.getDescription(id)).append(".\nExits:");
+        for (Direction exit : DIRECTIONS) {
+            if (world.getExit(id, exit) != World.NO_ROOM) {
+                out.append(' ').append(exit);
+            }
+        }
+        int chars = board.occupants(id);
+        if (chars != 0) {
+            CharacterState[] characters = board.getCharacters();
+            out.append("\nCharacters: ");
+            for (int m = chars; m != 0; m &= m - 1) {
+                characters[Integer.numberOfTrailingZeros(m)].appendTo(out).append("; ");
+            }
         }
-        return returnString;
+        return out;
+    }
+
+    /**
+     * Return the board the room is a view of.
+     */
+    Board getBoard()
+    {
+        return board;
+    }
+
+    /**
+     * Drop the cached long description, after the room's exits, characters
+     * or their items have changed.
+     */
+    void invalidate()
+    {
+        board.invalidate(id);
     }
 
     /**
@@ -116,27 +180,51 @@ public class Room
     public Room getExit(Direction direction) 
     {
         assert direction != null : "Room.getExit has null direction";
-        sane();
-        return exits.get(direction);
+        int exit = board.getWorld().getExit(id, direction);
+        return exit == World.NO_ROOM ? null : board.room(exit);
     }
     
     /**
-     * Picks any of the exits of the room with equal probability.
+     * Picks any of the exits of the room with equal probability, drawing
+     * from the random source of the room's game.
      * If there is no exits in this room, return null.
      * 
      * @return The room based on the random direction.
      */
     public Room randomExit() 
     {
-        if (exits.size() > 0) {
-            ArrayList<Direction> directions = new ArrayList<>();
-            directions.addAll(exits.keySet());
-            
-            Collections.shuffle(directions);
-            return exits.get(directions.get(0));
-        } else {
-            return null;
+        return randomExit(board.getRandom());
+    }
+    
+    /**
+     * Picks any of the exits of the room with equal probability.
+     * If there is no exits in this room, return null.
+     * 
+     * @param random The random source to draw from.
+     * @return The room based on the random direction.
+     * 
+     * Pre-condition: random is not null.
+     */
+    public Room randomExit(SplittableRandom random) 
+    {
+        World world = board.getWorld();
+        int exitCount = 0;
+        for (Direction direction : DIRECTIONS) {
+            if (world.getExit(id, direction) != World.NO_ROOM) {
+                exitCount++;
+            }
+        }
+        if (exitCount > 0) {
+            // Pick the n-th existing exit.
+            int n = random.nextInt(exitCount);
+            for (Direction direction : DIRECTIONS) {
+                int exit = world.getExit(id, direction);
+                if (exit != World.NO_ROOM && n-- == 0) {
+                    return board.room(exit);
+                }
+            }
         }
+        return null;
     }
     
     /**
@@ -147,12 +235,13 @@ public class Room
      * Pre-condition: character is not null.
      * Pre-condition: character is not already in the room.
      */
-    public void addCharacter(Character c)
+    public void addCharacter(CharacterState c)
     { 
         assert c != null : "Room.addCharacter has null character";
-        assert !chars.contains(c) : "Room.addCharacter for existing character";
+        assert !hasCharacter(c.getCharacter()) : "Room.addCharacter for existing character";
         sane();
-        chars.add(c);
+        board.getCharacters()[c.getCharacter().ordinal()] = c;
+        c.setRoom(this);
         sane();
     }
     
@@ -163,26 +252,32 @@ public class Room
      * 
      * Pre-condition: character is not null.
      */
-    public void removeCharacter(Character c)
+    public void removeCharacter(CharacterState c)
     {
         assert c != null : "Room.removeCharacter has null character";
-        chars.remove(c);
+        if (equals(c.getRoom())) {
+            c.setRoom(null);
+        }
     }
     
     /**
-     * Take given item from a character in the room.
+     * Let a character take an item from the first other character in the
+     * room that carries it, unless the taker carries one already.
      * 
-     * @param item The item to take.
-     * @return true if taking was successful, false otherwise
+     * @param item  The item to take.
+     * @param taker The character taking the item.
+     * @return true if the item was taken.
      * 
-     * Pre-Condition: item is not null.
+     * Pre-condition: neither item nor taker are null.
      */
-    public boolean take(Item item)
+    public boolean take(Item item, CharacterState taker)
     {
         assert item != null : "Room.take is given null item";
+        assert taker != null : "Room.take is given null taker";
         sane();
-        for (Character c : chars) {
-            if (c.take(item)) {
+        CharacterState[] characters = board.getCharacters();
+        for (int m = board.occupants(id) & ~taker.getCharacter().bit(); m != 0; m &= m - 1) {
+            if (characters[Integer.numberOfTrailingZeros(m)].give(taker, item)) {
                 sane();
                 return true;
             }
@@ -191,27 +286,103 @@ public class Room
         return false;
     }
     
+    /**
+     * Let a character give an item to the first other character in the
+     * room that does not carry it.
+     * 
+     * @param giver The character giving the item.
+     * @param item  The item to give.
+     * @return true if the item was given.
+     * 
+     * Pre-condition: neither giver nor item are null.
+     */
+    public boolean give(CharacterState giver, Item item)
+    {
+        assert giver != null : "Room.give gets null giver";
+        assert item != null : "Room.give gets null item";
+        sane();
+        CharacterState[] characters = board.getCharacters();
+        for (int m = board.occupants(id) & ~giver.getCharacter().bit(); m != 0; m &= m - 1) {
+            if (giver.give(characters[Integer.numberOfTrailingZeros(m)], item)) {
+                sane();
+                return true;
+            }
+        }
+        sane();
+        return false;
+    }
+    
+    /**
+     * Let a character swap one item with the first other character in the
+     * room that has an item the trader lacks and lacks an item the trader
+     * has. The lowest item of each kind is swapped, both at once.
+     * 
+     * @param trader The character trading, in the room or entering it.
+     * @return true if items were swapped.
+     * 
+     * Pre-condition: trader is not null.
+     */
+    public boolean trade(CharacterState trader)
+    {
+        assert trader != null : "Room.trade gets null trader";
+        CharacterState[] characters = board.getCharacters();
+        for (int m = board.occupants(id) & ~trader.getCharacter().bit(); m != 0; m &= m - 1) {
+            CharacterState other = characters[Integer.numberOfTrailingZeros(m)];
+            int offer = trader.getItems() & ~other.getItems();
+            int want  = other.getItems() & ~trader.getItems();
+            if (offer != 0 && want != 0 && trader.swap(other, Item.lowest(offer), Item.lowest(want))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Return whether the given character is in the room.
+     */
+    public boolean hasCharacter(Character c)
+    {
+        return (board.occupants(id) & c.bit()) != 0;
+    }
+    
+    /**
+     * Perform the given action for each character in the room.
+     * 
+     * @param action The action to perform.
+     */
+    public void forEachCharacter(Consumer<CharacterState> action)
+    {
+        CharacterState[] characters = board.getCharacters();
+        for (int m = board.occupants(id); m != 0; m &= m - 1) {
+            action.accept(characters[Integer.numberOfTrailingZeros(m)]);
+        }
+    }
+    
     /**
      * Return a set of characters in the room.
+     * The set is a copy; use forEachCharacter() on hot paths.
      */
-    public Set<Character> getChars() 
+    public Set<CharacterState> getChars() 
     {
-        return chars;
+        Set<CharacterState> result = new HashSet<>();
+        forEachCharacter(result::add);
+        return result;
     }
        
     /**
-     * Return a string listing the characters in the room.
+     * Two rooms are equal if they are views of the same room of the same board.
      */
-    private String getCharacterString()
+    public boolean equals(Object other)
     {
-        if (chars.isEmpty()) {
-            return "";
-        } else {
-            String returnString = "\nCharacters: ";
-            for (Character c : chars) {
-                returnString += c.toString() + "; ";
-            }
-            return returnString;
+        if (!(other instanceof Room)) {
+            return false;
         }
+        Room room = (Room) other;
+        return board == room.board && id == room.id;
+    }
+
+    public int hashCode()
+    {
+        return System.identityHashCode(board) * 31 + id;
     }
 }
@@ -0,0 +1,218 @@
+package com.wol.app;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file of saved games, one per numbered slot. <br/>
+ *
+ * The file holds a header followed by a fixed number of slots of equal
+ * size, and is memory-mapped while open. A slot holds a stamp and a game
+ * state as written by Game.save(), so saving or loading a game touches
+ * only the bytes of its slot wherever it is in the file. The stamp is
+ * cleared while a slot is written and set once the state is complete, so
+ * a save cut short leaves the slot empty rather than broken.
+ *
+ * Slots are either used by number, or claimed by keys made from names,
+ * see key() and slot(); a store is used one way or the other, not both.
+ * A slot also holds the key that claimed it, and a key's slot is found by
+ * probing from a slot picked by the key, so keys keep their slots when
+ * the store is opened again. Slots once claimed are never given up.
+ *
+ * Saved games are written back to the file by the operating system, and
+ * at the latest when the store is closed. Slots may be saved and loaded
+ * from any thread: saves and loads of the same slot take a lock striped
+ * by slot number, so they never overlap, while most saves and loads of
+ * different slots do not wait for each other.
+ */
+public class SessionStore implements Closeable
+{
+    // "WOLD", the first int of every store.
+    static final int MAGIC = 0x574F4C44;
+    static final int VERSION = 2;
+    // Bytes before the first slot: magic, version, slots, slot size, rooms and characters.
+    private static final int HEADER = 32;
+    // Bytes per slot: the key, the stamp and a state, rounded up to whole longs.
+    private static final int SLOT = (12 + Game.STATE_BYTES + 7) & ~7;
+    // Locks guarding the slots, slot i by lock i % LOCKS.
+    private static final int LOCKS = 64;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int slots;
+    private final Object[] locks = new Object[LOCKS];
+
+    /**
+     * Open a store, creating it with the given number of empty slots if
+     * the file does not exist.
+     *
+     * @param path  The store file.
+     * @param world The world of the games saved.
+     * @param slots The number of slots of a new store.
+     * @throws IOException if the file cannot be mapped, is not a store, or
+     * was made for another world or other characters.
+     *
+     * Pre-condition: world is not null and slots is positive.
+     */
+    public SessionStore(Path path, World world, int slots) throws IOException
+    {
+        assert world != null : "SessionStore.SessionStore has null world";
+        assert slots > 0 : "SessionStore.SessionStore has no slots";
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            if (created) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(VERSION).putInt(slots).putInt(SLOT)
+                    .putInt(world.size()).putInt(Character.count()).flip();
+                channel.write(header, 0);
+            } else if (channel.size() < HEADER) {
+                throw new IOException(path + " is not a session store");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(path + " is not a version " + VERSION + " session store");
+            }
+            this.slots = header.getInt();
+            if (header.getInt() != SLOT || header.getInt() != world.size()
+                    || header.getInt() != Character.count()) {
+                throw new IOException(path + " was made for another world");
+            }
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) this.slots * SLOT);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Return the number of slots.
+     */
+    public int slots()
+    {
+        return slots;
+    }
+
+    /**
+     * Return the key of the slot a game is saved in under a name, never 0.
+     *
+     * Pre-condition: name is not null.
+     */
+    public static long key(CharSequence name)
+    {
+        assert name != null : "SessionStore.key has null name";
+        long key = name.length();
+        for (int i = 0; i < name.length(); i++) {
+            key = TickScheduler.mix(key + name.charAt(i));
+        }
+        return key == 0 ? 1 : key;
+    }
+
+    /**
+     * Return the slot claimed by a key, claiming a free slot for it if it
+     * has none and claim is true.
+     *
+     * @return The slot, or -1 if the key has none and none was claimed,
+     * because claim is false or every slot is taken.
+     *
+     * Pre-condition: key is not 0.
+     */
+    public synchronized int slot(long key, boolean claim)
+    {
+        assert key != 0 : "SessionStore.slot has no key";
+        int slot = (int) Long.remainderUnsigned(key, slots);
+        for (int probe = 0; probe < slots; probe++) {
+            long owner = map.getLong(offset(slot));
+            if (owner == key) {
+                return slot;
+            } else if (owner == 0) {
+                if (!claim) {
+                    return -1;
+                }
+                map.putLong(offset(slot), key);
+                return slot;
+            }
+            slot = slot + 1 == slots ? 0 : slot + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Return whether a game is saved in a slot.
+     *
+     * Pre-condition: 0 <= slot < slots().
+     */
+    public boolean isSaved(int slot)
+    {
+        return map.getInt(offset(slot) + 8) == VERSION;
+    }
+
+    /**
+     * Save a game in a slot, replacing the game saved there.
+     *
+     * Pre-condition: game is not null and 0 <= slot < slots().
+     */
+    public void save(int slot, Game game)
+    {
+        assert game != null : "SessionStore.save has null game";
+        int offset = offset(slot);
+        synchronized (locks[slot % LOCKS]) {
+            map.putInt(offset + 8, 0);
+            ByteBuffer state = map.duplicate();
+            state.position(offset + 12);
+            game.save(state);
+            map.putInt(offset + 8, VERSION);
+        }
+    }
+
+    /**
+     * Put a game into the state saved in a slot.
+     *
+     * @return false if no game is saved in the slot.
+     * @throws IllegalArgumentException if the slot holds a broken state.
+     *
+     * Pre-condition: game is not null, is played on the store's world
+     * and 0 <= slot < slots().
+     */
+    public boolean load(int slot, Game game)
+    {
+        assert game != null : "SessionStore.load has null game";
+        synchronized (locks[slot % LOCKS]) {
+            if (!isSaved(slot)) {
+                return false;
+            }
+            ByteBuffer state = map.duplicate();
+            state.position(offset(slot) + 12);
+            game.load(state);
+        }
+        return true;
+    }
+
+    /**
+     * Return the offset of a slot.
+     */
+    private int offset(int slot)
+    {
+        assert 0 <= slot && slot < slots : "SessionStore has no such slot";
+        return HEADER + slot * SLOT;
+    }
+
+    /**
+     * Write all saved games to the file and close it.
+     */
+    public void close() throws IOException
+    {
+        map.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,492 @@
+package com.wol.app;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A world explored by many players at once. <br/>
+ *
+ * Every player plays a Game of its own on the shared World, by the rules
+ * of a Game and with characters of its own that move and act as in any
+ * game. What the shared world adds is who is in which room: players in
+ * the same room see each other when they look around, and may give items
+ * to each other and trade them when no character of their games will.
+ * A game joins the world with join(), and from then on keeps its player's
+ * room in the world up to date as it moves, loads a saved state or
+ * finishes.
+ *
+ * Who is in which room is split over stripes of locks, a room's stripe
+ * picked by a hash of its number, and every stripe keeps the players of
+ * its rooms in a table keyed by room number. Who is in a room is only
+ * read or changed holding the room's stripe, and a player moving between
+ * rooms holds the stripes of both, taken in stripe order. So players in
+ * different rooms never wait for each other.
+ *
+ * Items move between players by compare-and-set on their Inventories.
+ * A player gives or trades holding the stripe of its room, so the partner
+ * cannot leave the room while the items move, and a player that left the
+ * world has closed its inventory, so it takes no more items.
+ *
+ * A game, and with it its Player, is driven by one thread at a time; the
+ * world may be used by any number of threads.
+ */
+public class SharedWorld
+{
+    // The most other players named in a description of a room.
+    static final int MAX_LISTED = 8;
+
+    private final World world;
+    private final Stripe[] stripes;
+
+    /**
+     * Create a shared world with four stripes per processor.
+     *
+     * Pre-condition: world is not null.
+     */
+    public SharedWorld(World world)
+    {
+        this(world, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a shared world with at least the given number of stripes.
+     *
+     * Pre-condition: world is not null and stripes is positive.
+     */
+    public SharedWorld(World world, int stripes)
+    {
+        assert world != null : "SharedWorld.SharedWorld has null world";
+        assert stripes > 0 : "SharedWorld.SharedWorld has no stripes";
+        this.world = world;
+        this.stripes = new Stripe[stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(i);
+        }
+    }
+
+    /**
+     * Return the world the players explore.
+     */
+    public World getWorld()
+    {
+        return world;
+    }
+
+    /**
+     * Let the player of a game join the world in the player's room.
+     *
+     * @param name The name the other players see.
+     * @param game The game of the player.
+     *
+     * Pre-condition: name and game are not null, and the game is played
+     * on the shared world and has not joined one yet.
+     */
+    public Player join(String name, Game game)
+    {
+        assert name != null : "SharedWorld.join has null name";
+        assert game != null && game.getWorld() == world : "SharedWorld.join has game of another world";
+        Player player = new Player(name, game);
+        game.setCompany(player);
+        return player;
+    }
+
+    /**
+     * Return the number of players in a room.
+     *
+     * Pre-condition: 0 <= room < getWorld().size().
+     */
+    public int players(int room)
+    {
+        Stripe stripe = stripe(room);
+        synchronized (stripe) {
+            Occupants occupants = stripe.get(room);
+            return occupants == null ? 0 : occupants.size;
+        }
+    }
+
+    /**
+     * Return the hash of a room, from which its stripe and its entry in
+     * the stripe's table are picked.
+     */
+    private static long hash(int room)
+    {
+        return TickScheduler.mix(room);
+    }
+
+    /**
+     * Return the stripe of a room.
+     */
+    private Stripe stripe(int room)
+    {
+        return stripes[(int) hash(room) & (stripes.length - 1)];
+    }
+
+    /**
+     * The players in one room.
+     */
+    private static class Occupants
+    {
+        private final int room;
+        private Player[] players = new Player[2];
+        private int size;
+
+        Occupants(int room)
+        {
+            this.room = room;
+        }
+    }
+
+    /**
+     * The players in the rooms of one stripe: a table of the occupied
+     * rooms, probed linearly from a slot picked by the room's hash, and
+     * the players of each. A room is dropped from the table once its last
+     * player leaves.
+     */
+    private static class Stripe
+    {
+        private final int index;
+        private Occupants[] table = new Occupants[8];
+        private int rooms; // occupied rooms in the table
+
+        Stripe(int index)
+        {
+            this.index = index;
+        }
+
+        /**
+         * Return the slot of the table from which a room is probed.
+         */
+        private static int home(int room, int length)
+        {
+            return (int) (hash(room) >>> 32) & (length - 1);
+        }
+
+        /**
+         * Return the players in a room, or null if there are none.
+         */
+        Occupants get(int room)
+        {
+            int mask = table.length - 1;
+            for (int i = home(room, table.length); table[i] != null; i = (i + 1) & mask) {
+                if (table[i].room == room) {
+                    return table[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Add a player to a room.
+         */
+        void add(int room, Player player)
+        {
+            Occupants here = get(room);
+            if (here == null) {
+                if (2 * (rooms + 1) > table.length) {
+                    grow();
+                }
+                here = new Occupants(room);
+                put(here);
+                rooms++;
+            }
+            if (here.size == here.players.length) {
+                Player[] players = new Player[2 * here.size];
+                System.arraycopy(here.players, 0, players, 0, here.size);
+                here.players = players;
+            }
+            player.index = here.size;
+            here.players[here.size++] = player;
+        }
+
+        /**
+         * Remove a player from a room, moving the last player of the room
+         * into its place.
+         */
+        void remove(int room, Player player)
+        {
+            Occupants here = get(room);
+            Player last = here.players[--here.size];
+            here.players[player.index] = last;
+            last.index = player.index;
+            here.players[here.size] = null;
+            if (here.size == 0) {
+                delete(room);
+                rooms--;
+            }
+        }
+
+        /**
+         * Put the players of a room into the first free slot from its home.
+         */
+        private void put(Occupants occupants)
+        {
+            int mask = table.length - 1;
+            int i = home(occupants.room, table.length);
+            while (table[i] != null) {
+                i = (i + 1) & mask;
+            }
+            table[i] = occupants;
+        }
+
+        /**
+         * Drop a room from the table, moving back the rooms probed past it.
+         */
+        private void delete(int room)
+        {
+            int mask = table.length - 1;
+            int gap = home(room, table.length);
+            while (table[gap].room != room) {
+                gap = (gap + 1) & mask;
+            }
+            for (int i = (gap + 1) & mask; table[i] != null; i = (i + 1) & mask) {
+                // An entry may fill the gap unless its home lies cyclically in (gap, i].
+                int home = home(table[i].room, table.length);
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    table[gap] = table[i];
+                    gap = i;
+                }
+            }
+            table[gap] = null;
+        }
+
+        /**
+         * Double the table.
+         */
+        private void grow()
+        {
+            Occupants[] old = table;
+            table = new Occupants[2 * old.length];
+            for (Occupants occupants : old) {
+                if (occupants != null) {
+                    put(occupants);
+                }
+            }
+        }
+    }
+
+    /**
+     * The player of a game in a shared world.
+     */
+    public class Player
+    {
+        private final String name;
+        private final Game game;
+        private final CharacterState state;
+        // The room the player is in, NO_ROOM while in none; changed holding the room's stripe.
+        private volatile int room = World.NO_ROOM;
+        // The position of the player among the occupants of its room.
+        private int index;
+
+        private Player(String name, Game game)
+        {
+            this.name  = name;
+            this.game  = game;
+            this.state = game.getCharacterState(Character.PLAYER);
+        }
+
+        /**
+         * Return the name of the player.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Return the game of the player.
+         */
+        public Game getGame()
+        {
+            return game;
+        }
+
+        /**
+         * Return the room the player is in, or World.NO_ROOM once its game finished.
+         */
+        public int getRoom()
+        {
+            return room;
+        }
+
+        /**
+         * Move the player to a room, or out of the world for NO_ROOM,
+         * holding the stripes of both rooms. A player leaving the world
+         * closes its inventory while no other player can give to it, so
+         * no item reaches it afterwards.
+         */
+        void place(int to)
+        {
+            int from = room;
+            if (from == to) {
+                return;
+            }
+            Stripe a = from == World.NO_ROOM ? null : stripe(from);
+            Stripe b = to == World.NO_ROOM ? null : stripe(to);
+            Stripe first  = a == null || b != null && b.index < a.index ? b : a;
+            Stripe second = first == a ? b : a;
+            synchronized (first) {
+                synchronized (second == null ? first : second) {
+                    if (a != null) {
+                        a.remove(from, this);
+                    }
+                    if (b != null) {
+                        b.add(to, this);
+                    } else {
+                        state.close();
+                    }
+                    room = to;
+                }
+            }
+        }
+
+        /**
+         * Return the description of the player's room followed by the
+         * first MAX_LISTED other players in it.
+         */
+        String describe(String description)
+        {
+            int here = room;
+            if (here == World.NO_ROOM) {
+                return description;
+            }
+            StringBuilder out = new StringBuilder(description);
+            Stripe stripe = stripe(here);
+            synchronized (stripe) {
+                Occupants occupants = stripe.get(here);
+                String separator = "\nPlayers: ";
+                for (int i = 0, listed = 0; i < occupants.size && listed < MAX_LISTED; i++) {
+                    if (occupants.players[i] != this) {
+                        out.append(separator).append(occupants.players[i].name);
+                        separator = "; ";
+                        listed++;
+                    }
+                }
+                int others = occupants.size - 1;
+                if (others > MAX_LISTED) {
+                    out.append(" and ").append(others - MAX_LISTED).append(" more");
+                }
+            }
+            return out.toString();
+        }
+
+        /**
+         * Give an item to the first other player in the player's room that
+         * does not carry it.
+         *
+         * @return true if the item was given.
+         */
+        boolean give(Item item)
+        {
+            int here = room;
+            if (here == World.NO_ROOM) {
+                return false;
+            }
+            Stripe stripe = stripe(here);
+            synchronized (stripe) {
+                Occupants occupants = stripe.get(here);
+                for (int i = 0; i < occupants.size; i++) {
+                    Player other = occupants.players[i];
+                    if (other != this && state.pass(other.state, item)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Swap an item with the first other player in the player's room
+         * that has an item the player lacks and lacks an item the player
+         * has, the lowest of each kind, see Room.trade().
+         *
+         * @return The message to the player, or null if nobody traded.
+         */
+        String trade()
+        {
+            int here = room;
+            if (here == World.NO_ROOM) {
+                return null;
+            }
+            Stripe stripe = stripe(here);
+            synchronized (stripe) {
+                Occupants occupants = stripe.get(here);
+                for (int i = 0; i < occupants.size; i++) {
+                    Player other = occupants.players[i];
+                    if (other == this) {
+                        continue;
+                    }
+                    int mine   = state.getItems();
+                    int theirs = other.state.getItems();
+                    Item given = Item.lowest(mine & ~theirs);
+                    Item taken = Item.lowest(theirs & ~mine);
+                    if (given != null && taken != null && state.exchange(other.state, given, taken)) {
+                        return "You traded your " + given + " for " + taken + ".";
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Let players explore a world at once, a thread per processor, and
+     * print the commands executed per second. A player whose game finishes
+     * is replaced by a new one.
+     *
+     * @param args Number of players, seconds and map file, all optional.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int players    = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+        World world    = args.length > 2 ? WorldLoader.load(Paths.get(args[2])) : World.london();
+
+        SharedWorld shared = new SharedWorld(world);
+        int threads = Math.min(players, Runtime.getRuntime().availableProcessors());
+        long[] commands = new long[threads];
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        Thread[] running = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            running[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(thread);
+                List<Player> mine = new ArrayList<>();
+                for (int i = thread; i < players; i += threads) {
+                    mine.add(shared.join("Player " + i, new Game(world, random.nextLong())));
+                }
+                Item[] all = Item.values();
+                while (System.nanoTime() < end) {
+                    for (int i = 0; i < mine.size(); i++) {
+                        Player player = mine.get(i);
+                        Game game = player.getGame();
+                        switch (random.nextInt(8)) {
+                            case 0: game.take(all[random.nextInt(all.length)]); break;
+                            case 1: game.give(all[random.nextInt(all.length)]); break;
+                            case 2: game.trade();                               break;
+                            case 3: game.look();                                break;
+                            default: game.goRoom(null, true);
+                        }
+                        if (game.finished()) {
+                            mine.set(i, shared.join(player.getName(), new Game(world, random.nextLong())));
+                        }
+                        commands[thread]++;
+                    }
+                }
+            }, "player-" + t);
+            running[t].start();
+        }
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            try {
+                running[t].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            total += commands[t];
+        }
+        System.out.printf("%d players on %d threads: %.0f commands/s%n", players, threads, total / seconds);
+    }
+}
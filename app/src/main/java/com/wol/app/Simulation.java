@@ -0,0 +1,259 @@
+package com.wol.app;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * A headless runner that plays many independent games in parallel. <br/>
+ *
+ * Every session builds its own Game and feeds it the lines of a script
+ * until the game finishes or the command limit is reached. Sessions are
+ * spread over a fork-join pool and their outcomes are aggregated in a
+ * Report.
+ *
+ * To run a batch from the command line, call the static main method with
+ * the number of sessions, the command limit, a seed and a map file.
+ */
+public class Simulation
+{
+    /**
+     * A stream of input lines fed to one session.
+     */
+    @FunctionalInterface
+    public interface Script
+    {
+        /**
+         * Return the input line for the given step of a session.
+         *
+         * @param step   The number of commands already issued.
+         * @param random The random source of the session.
+         * @return The next line, or null if the script is over.
+         */
+        String line(int step, SplittableRandom random);
+    }
+
+    // Lines picked from by the random script.
+    private static final String[] RANDOM_LINES = {
+        "go north", "go west", "go south", "go east", "random", "look",
+        "take sandwich", "take crisps", "take drink", "eat"
+    };
+
+    private final World world;
+    private final Script script;
+    private final int maxCommands;
+    private final long seed;
+    private final Parser parser; // parse() keeps no state, so sessions share it
+
+    /**
+     * Create a simulation on the London map.
+     *
+     * @param script      The input lines fed to every session.
+     * @param maxCommands The number of commands after which a session is abandoned.
+     * @param seed        The seed from which each session derives its random source.
+     */
+    public Simulation(Script script, int maxCommands, long seed)
+    {
+        this(World.london(), script, maxCommands, seed);
+    }
+
+    /**
+     * Create a simulation.
+     *
+     * @param world       The world every session is played on.
+     * @param script      The input lines fed to every session.
+     * @param maxCommands The number of commands after which a session is abandoned.
+     * @param seed        The seed from which each session derives its random source.
+     *
+     * Pre-condition: world and script are not null and maxCommands is positive.
+     */
+    public Simulation(World world, Script script, int maxCommands, long seed)
+    {
+        assert world != null : "Simulation.Simulation has null world";
+        assert script != null : "Simulation.Simulation has null script";
+        assert maxCommands > 0 : "Simulation.Simulation has no commands";
+        this.world       = world;
+        this.script      = script;
+        this.maxCommands = maxCommands;
+        this.seed        = seed;
+        parser = new Parser(new ByteArrayInputStream(new byte[0]));
+    }
+
+    /**
+     * Return a script that feeds the given lines in order.
+     */
+    public static Script scripted(String... lines)
+    {
+        final String[] copy = lines.clone();
+        return (step, random) -> step < copy.length ? copy[step] : null;
+    }
+
+    /**
+     * Return a script that feeds random movement, take, look and eat commands.
+     */
+    public static Script randomScript()
+    {
+        return (step, random) -> RANDOM_LINES[random.nextInt(RANDOM_LINES.length)];
+    }
+
+    /**
+     * Play one session to its end.
+     *
+     * @param session The number of the session, used to derive its random
+     *                sources; playing the same session twice gives the same result.
+     * @return The outcome of the session, PLAYING if it was abandoned.
+     */
+    public Outcome play(int session)
+    {
+        SplittableRandom random = new SplittableRandom(seed + session);
+        Game game   = new Game(world, random.nextLong());
+        GameMain ui = new GameMain(game, parser);
+
+        for (int step = 0; step < maxCommands && !game.finished(); step++) {
+            String line = script.line(step, random);
+            if (line == null) {
+                break;
+            }
+            parser.parse(line).execute(ui, game);
+        }
+        return game.getOutcome();
+    }
+
+    /**
+     * Play the given number of sessions on the common fork-join pool.
+     */
+    public Report run(int sessions)
+    {
+        return run(sessions, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Play the given number of sessions on the given pool.
+     *
+     * Pre-condition: sessions is not negative and pool is not null.
+     */
+    public Report run(int sessions, ForkJoinPool pool)
+    {
+        assert sessions >= 0 : "Simulation.run gets negative sessions";
+        assert pool != null : "Simulation.run gets null pool";
+
+        final LongAdder[] counts = new LongAdder[Outcome.values().length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+
+        long start = System.nanoTime();
+        pool.submit(() -> IntStream.range(0, sessions).parallel()
+            .forEach(session -> counts[play(session).ordinal()].increment()))
+            .join();
+        long elapsed = System.nanoTime() - start;
+
+        long[] totals = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            totals[i] = counts[i].sum();
+        }
+        return new Report(totals, elapsed);
+    }
+
+    /**
+     * The aggregated outcomes of a batch of sessions.
+     */
+    public static class Report
+    {
+        private final long[] counts; // indexed by Outcome ordinal
+        private final long sessions;
+        private final long elapsedNanos;
+
+        private Report(long[] counts, long elapsedNanos)
+        {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.counts       = counts;
+            this.sessions     = total;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Return the number of sessions played.
+         */
+        public long getSessions()
+        {
+            return sessions;
+        }
+
+        /**
+         * Return the number of sessions that ended with the given outcome.
+         * Abandoned sessions are counted as Outcome.PLAYING.
+         */
+        public long getCount(Outcome outcome)
+        {
+            return counts[outcome.ordinal()];
+        }
+
+        /**
+         * Return the share of sessions that ended with the given outcome.
+         */
+        public double getRate(Outcome outcome)
+        {
+            return sessions == 0 ? 0.0 : (double) getCount(outcome) / sessions;
+        }
+
+        /**
+         * Return the number of sessions that were won, by goal or by meal.
+         */
+        public long getWins()
+        {
+            return getCount(Outcome.GOAL) + getCount(Outcome.MEAL);
+        }
+
+        /**
+         * Return the number of sessions played per second.
+         */
+        public double sessionsPerSecond()
+        {
+            return elapsedNanos == 0 ? 0.0 : sessions * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Return a summary of the batch, one line per figure.
+         */
+        public String toString()
+        {
+            return String.format(
+                "Sessions:   %d%n" +
+                "Wins:       %.2f%% (goal %.2f%%, meal %.2f%%)%n" +
+                "Losses:     %.2f%% (quit)%n" +
+                "Timeouts:   %.2f%%%n" +
+                "Unfinished: %.2f%%%n" +
+                "Throughput: %.0f sessions/s",
+                sessions,
+                100.0 * getWins() / Math.max(1, sessions),
+                100 * getRate(Outcome.GOAL), 100 * getRate(Outcome.MEAL),
+                100 * getRate(Outcome.QUIT),
+                100 * getRate(Outcome.TIMEOUT),
+                100 * getRate(Outcome.PLAYING),
+                sessionsPerSecond());
+        }
+    }
+
+    /**
+     * Play a batch of random sessions and print the report.
+     *
+     * @param args Number of sessions, command limit, seed and map file, all optional.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int sessions    = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int maxCommands = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        long seed       = args.length > 2 ? Long.parseLong(args[2]) : 0L;
+        World world     = args.length > 3 ? WorldLoader.load(Paths.get(args[3])) : World.london();
+
+        Simulation simulation = new Simulation(world, randomScript(), maxCommands, seed);
+        System.out.println(simulation.run(sessions));
+    }
+}
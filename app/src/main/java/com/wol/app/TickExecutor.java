@@ -0,0 +1,266 @@
+package com.wol.app;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Executes the commands of many games in ticks of a fixed length. <br/>
+ *
+ * Commands submitted for a game are queued, and at every tick the games
+ * with queued commands are advanced in one pass: the games are split
+ * into shards, the shards are advanced in parallel, and each game of a
+ * shard executes its commands in order up to the first one that advances
+ * its clock. Commands behind it wait for the next tick, so every game
+ * moves its characters at most once per tick however many moves arrive
+ * in a burst, and the work of a tick is bounded by the number of games.
+ *
+ * Games of different shards run at once, so whatever they share must be
+ * safe to use from several threads, as a SessionStore is: two games saving
+ * to or loading from the same slot in one tick take turns on its lock.
+ *
+ * Answers are handed to the game's Answers on the thread that advanced
+ * the game, and a listener runs once at the end of every tick that did
+ * any work, for instance to wake the thread sending the answers.
+ */
+public class TickExecutor implements Closeable
+{
+    /**
+     * Receives the answers to the commands of one game.
+     */
+    @FunctionalInterface
+    public interface Answers
+    {
+        /**
+         * Take the answer to a command.
+         *
+         * @param message  The message to the player.
+         * @param finished Whether the game finished.
+         */
+        void answer(String message, boolean finished);
+    }
+
+    private final int shards;
+    private final long tickNanos;
+    private final Runnable afterTick;
+    private final ConcurrentLinkedQueue<Player> ready = new ConcurrentLinkedQueue<>();
+    private final List<List<Player>> byShard = new ArrayList<>();
+    private final Metrics.Histogram tickTimes = new Metrics.Histogram("tick");
+    private final Thread thread;
+    private volatile boolean running;
+    private int joined;         // players joined so far, to spread them over the shards
+    private volatile long commands;
+
+    /**
+     * Create an executor. Call start() to run its ticks.
+     *
+     * @param shards    The number of shards the games are split into.
+     * @param tickNanos The length of a tick.
+     * @param afterTick Run at the end of every tick that advanced a game, may be null.
+     *
+     * Pre-condition: shards and tickNanos are positive.
+     */
+    public TickExecutor(int shards, long tickNanos, Runnable afterTick)
+    {
+        assert shards > 0 : "TickExecutor.TickExecutor has no shards";
+        assert tickNanos > 0 : "TickExecutor.TickExecutor has no tick";
+        this.shards    = shards;
+        this.tickNanos = tickNanos;
+        this.afterTick = afterTick;
+        for (int shard = 0; shard < shards; shard++) {
+            byShard.add(new ArrayList<>());
+        }
+        thread = new Thread(this::run, "ticks");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Return a player through which commands for a game are submitted.
+     *
+     * Pre-condition: game, ui and answers are not null.
+     */
+    public synchronized Player join(Game game, GameMain ui, Answers answers)
+    {
+        assert game != null : "TickExecutor.join has null game";
+        assert ui != null : "TickExecutor.join has null ui";
+        assert answers != null : "TickExecutor.join has null answers";
+        return new Player(game, ui, answers, joined++ % shards);
+    }
+
+    /**
+     * Start running ticks on a thread of the executor's own.
+     */
+    public void start()
+    {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stop running ticks. Commands still queued are dropped.
+     */
+    public void close()
+    {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Return the times the ticks that advanced a game took, in nanoseconds.
+     */
+    public Metrics.Histogram getTickTimes()
+    {
+        return tickTimes;
+    }
+
+    /**
+     * Return the number of commands executed so far.
+     */
+    public long getCommands()
+    {
+        return commands;
+    }
+
+    /**
+     * The tick loop.
+     */
+    private void run()
+    {
+        long next = System.nanoTime();
+        while (running) {
+            next += tickNanos;
+            long now = System.nanoTime();
+            if (next > now) {
+                LockSupport.parkNanos(next - now);
+                if (System.nanoTime() < next) {
+                    next -= tickNanos; // woken early: the tick is not over
+                    continue;
+                }
+            } else {
+                next = now; // fell behind: do not try to catch up with a burst of ticks
+            }
+            tick();
+        }
+    }
+
+    /**
+     * Advance every game with queued commands.
+     */
+    void tick()
+    {
+        int players = 0;
+        for (Player player; (player = ready.poll()) != null; players++) {
+            byShard.get(player.shard).add(player);
+        }
+        if (players == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        long[] executed = new long[shards];
+        if (shards == 1) {
+            executed[0] = advance(byShard.get(0));
+        } else {
+            ForkJoinPool.commonPool().submit(() -> IntStream.range(0, shards).parallel()
+                .forEach(shard -> executed[shard] = advance(byShard.get(shard)))).join();
+        }
+        long total = commands;
+        for (int shard = 0; shard < shards; shard++) {
+            total += executed[shard];
+            for (Player player : byShard.get(shard)) {
+                player.reschedule();
+            }
+            byShard.get(shard).clear();
+        }
+        commands = total;
+        if (afterTick != null) {
+            afterTick.run();
+        }
+        tickTimes.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Advance the games of a shard and return the commands executed.
+     */
+    private static long advance(List<Player> players)
+    {
+        long executed = 0;
+        for (Player player : players) {
+            executed += player.advance();
+        }
+        return executed;
+    }
+
+    /**
+     * A game played through the executor.
+     */
+    public class Player
+    {
+        private final Game game;
+        private final GameMain ui;
+        private final Answers answers;
+        private final int shard;
+        private final ConcurrentLinkedQueue<Command> queued = new ConcurrentLinkedQueue<>();
+        // Whether the player is in ready or being advanced.
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Player(Game game, GameMain ui, Answers answers, int shard)
+        {
+            this.game    = game;
+            this.ui      = ui;
+            this.answers = answers;
+            this.shard   = shard;
+        }
+
+        /**
+         * Queue a command for the next tick.
+         *
+         * Pre-condition: command is not null.
+         */
+        public void submit(Command command)
+        {
+            assert command != null : "Player.submit has null command";
+            queued.add(command);
+            if (scheduled.compareAndSet(false, true)) {
+                ready.add(this);
+            }
+        }
+
+        /**
+         * Execute queued commands up to the first that advances the clock,
+         * dropping those for a finished game, and return how many ran.
+         */
+        private int advance()
+        {
+            int time = game.getTime();
+            int executed = 0;
+            for (Command command; game.getTime() == time && (command = queued.poll()) != null; ) {
+                if (!game.finished()) {
+                    String message = command.execute(ui, game);
+                    executed++;
+                    answers.answer(message, game.finished());
+                }
+            }
+            return executed;
+        }
+
+        /**
+         * Queue the player for the next tick if commands are left.
+         */
+        private void reschedule()
+        {
+            scheduled.set(false);
+            if (!queued.isEmpty() && scheduled.compareAndSet(false, true)) {
+                ready.add(this);
+            }
+        }
+    }
+}
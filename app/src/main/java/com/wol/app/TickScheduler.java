@@ -0,0 +1,83 @@
+package com.wol.app;
+
+/**
+ * Moves the characters of a board by one tick of the clock.
+ *
+ * A tick runs in two phases. First every character other than the player
+ * decides whether it moves and through which exit. The decisions only read
+ * the world, and each character draws its own random numbers from the
+ * tick's seed and its ordinal, so no decision depends on another. A board
+ * has at most a few dozen characters, too few to gain from deciding on
+ * several threads, so they are decided in turn on the calling thread.
+ * Then the moves are applied in character order:
+ * each mover leaves its room, performs its act in the room it enters and
+ * is added to that room. Acts of characters entering the same room, such
+ * as the CookieMonster's and the CrispGiver's, thus always apply in the
+ * same order, and a board ticked with the same seeds ends up the same.
+ */
+class TickScheduler
+{
+    private final Board board;
+    private final int[] targets; // room entered by character ordinal, NO_ROOM if staying
+
+    /**
+     * Create a scheduler for the characters of a board.
+     *
+     * Pre-condition: board is not null.
+     */
+    TickScheduler(Board board)
+    {
+        assert board != null : "TickScheduler.TickScheduler has null board";
+        this.board = board;
+        targets = new int[board.getCharacters().length];
+    }
+
+    /**
+     * Move the characters by one tick.
+     *
+     * @param seed The seed of the tick, from which all its draws derive.
+     */
+    void tick(long seed)
+    {
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = decide(i, seed);
+        }
+
+        CharacterState[] characters = board.getCharacters();
+        for (int i = 0; i < targets.length; i++) {
+            if (targets[i] != World.NO_ROOM) {
+                CharacterState state = characters[i];
+                Room room = board.room(targets[i]);
+                state.getRoom().removeCharacter(state);
+                board.getAct(i).enterRoom(state, room); // Act before adding character.
+                room.addCharacter(state);
+            }
+        }
+    }
+
+    /**
+     * Return the room a character moves to in a tick, or NO_ROOM if it stays,
+     * as its behaviour chooses. Characters whose behaviours pass stay.
+     */
+    private int decide(int ordinal, long seed)
+    {
+        CharacterState state = board.getCharacters()[ordinal];
+        if (state == null || state.getRoom() == null || state.getCharacter() == Character.PLAYER) {
+            return World.NO_ROOM;
+        }
+        long draw = mix(seed + (2L * ordinal + 1) * 0x9E3779B97F4A7C15L);
+        int room = board.getBehaviour(ordinal).choose(board.getWorld(), state,
+            board.getCharacters()[Character.PLAYER.ordinal()], draw);
+        return room < 0 ? World.NO_ROOM : room;
+    }
+
+    /**
+     * Scramble the bits of a value, as SplittableRandom does.
+     */
+    static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
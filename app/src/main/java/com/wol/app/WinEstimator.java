@@ -0,0 +1,262 @@
+package com.wol.app;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A Monte-Carlo estimate of how often a bot wins on a world. <br/>
+ *
+ * Trials are played in rounds of ROUND games, each round split into
+ * chunks of CHUNK games played in parallel. A chunk draws from a random
+ * source of its own, seeded from the seed and its number, and counts its
+ * outcomes in an array of longs, so the threads share nothing while they
+ * play and the estimate only depends on the seed. After each round the
+ * rate of every outcome is given a 95% Wilson score interval, and the
+ * trials stop once every interval is within the requested half-width of
+ * its rate.
+ */
+public class WinEstimator
+{
+    // Games played between checks of the intervals.
+    static final int ROUND = 1 << 16;
+    // Games played by one task.
+    private static final int CHUNK = 1 << 10;
+    // The normal quantile of a 95% confidence interval.
+    private static final double Z = 1.959963984540054;
+    private static final int OUTCOMES = Outcome.values().length;
+
+    private final World world;
+    private final Bot bot;
+    private final int maxCommands;
+    private final long seed;
+    private final Parser parser; // parse() keeps no state, so games share it
+
+    /**
+     * Create an estimator.
+     *
+     * @param world       The world the games are played on.
+     * @param bot         The strategy playing every game, see Bots.
+     * @param maxCommands The number of commands after which a game is given up.
+     * @param seed        The seed from which all games draw.
+     *
+     * Pre-condition: world and bot are not null and maxCommands is positive.
+     */
+    public WinEstimator(World world, Bot bot, int maxCommands, long seed)
+    {
+        assert world != null : "WinEstimator.WinEstimator has null world";
+        assert bot != null : "WinEstimator.WinEstimator has null bot";
+        assert maxCommands > 0 : "WinEstimator.WinEstimator has no commands";
+        this.world       = world;
+        this.bot         = bot;
+        this.maxCommands = maxCommands;
+        this.seed        = seed;
+        parser = new Parser(new ByteArrayInputStream(new byte[0]));
+    }
+
+    /**
+     * Play trials on the common fork-join pool until every rate is known to
+     * within the given half-width, or the given number of trials is played.
+     */
+    public Estimate estimate(long maxTrials, double halfWidth)
+    {
+        return estimate(maxTrials, halfWidth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Play trials on the given pool until every rate is known to within
+     * the given half-width, or the given number of trials is played.
+     *
+     * Pre-condition: maxTrials and halfWidth are positive and pool is not null.
+     */
+    public Estimate estimate(long maxTrials, double halfWidth, ForkJoinPool pool)
+    {
+        assert maxTrials > 0 : "WinEstimator.estimate has no trials";
+        assert halfWidth > 0 : "WinEstimator.estimate has no half-width";
+        assert pool != null : "WinEstimator.estimate has null pool";
+        long[] counts = new long[OUTCOMES];
+        long trials = 0;
+        long start = System.nanoTime();
+        while (trials < maxTrials) {
+            final long first = trials;
+            final int games = (int) Math.min(ROUND, maxTrials - trials);
+            int chunks = (games + CHUNK - 1) / CHUNK;
+            long[][] results = new long[chunks][];
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk ->
+                results[chunk] = play(first / CHUNK + chunk, Math.min(CHUNK, games - chunk * CHUNK))))
+                .join();
+            for (long[] result : results) {
+                for (int i = 0; i < OUTCOMES; i++) {
+                    counts[i] += result[i];
+                }
+            }
+            trials += games;
+            if (new Estimate(counts, trials, 0).within(halfWidth)) {
+                break;
+            }
+        }
+        return new Estimate(counts, trials, System.nanoTime() - start);
+    }
+
+    /**
+     * Play the games of a chunk and return the count of each outcome, by ordinal.
+     */
+    private long[] play(long chunk, int games)
+    {
+        long[] counts = new long[OUTCOMES];
+        SplittableRandom random = new SplittableRandom(TickScheduler.mix(seed + chunk * 0x9E3779B97F4A7C15L));
+        for (int i = 0; i < games; i++) {
+            Game game   = new Game(world, random.nextLong());
+            GameMain ui = new GameMain(game, parser);
+            for (int step = 0; step < maxCommands && !game.finished(); step++) {
+                Command command = bot.next(game, random);
+                if (command == null) {
+                    break;
+                }
+                command.execute(ui, game);
+            }
+            counts[game.getOutcome().ordinal()]++;
+        }
+        return counts;
+    }
+
+    /**
+     * The rates of the outcomes of the trials played, with their intervals.
+     */
+    public static class Estimate
+    {
+        private final long[] counts; // indexed by Outcome ordinal
+        private final long trials;
+        private final long elapsedNanos;
+
+        private Estimate(long[] counts, long trials, long elapsedNanos)
+        {
+            this.counts       = counts.clone();
+            this.trials       = trials;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Return the number of trials played.
+         */
+        public long getTrials()
+        {
+            return trials;
+        }
+
+        /**
+         * Return the number of trials that ended with the given outcome.
+         * Games given up are counted as Outcome.PLAYING.
+         */
+        public long getCount(Outcome outcome)
+        {
+            return counts[outcome.ordinal()];
+        }
+
+        /**
+         * Return the share of trials that ended with the given outcome.
+         */
+        public double getRate(Outcome outcome)
+        {
+            return trials == 0 ? 0.0 : (double) getCount(outcome) / trials;
+        }
+
+        /**
+         * Return the lower end of the 95% interval of the rate of an outcome.
+         */
+        public double getLower(Outcome outcome)
+        {
+            return Math.max(0.0, Math.min(getRate(outcome), center(outcome) - halfWidth(outcome)));
+        }
+
+        /**
+         * Return the upper end of the 95% interval of the rate of an outcome.
+         */
+        public double getUpper(Outcome outcome)
+        {
+            return Math.min(1.0, Math.max(getRate(outcome), center(outcome) + halfWidth(outcome)));
+        }
+
+        private double center(Outcome outcome)
+        {
+            double p = getRate(outcome);
+            return trials == 0 ? 0.5 : (p + Z * Z / (2 * trials)) / (1 + Z * Z / trials);
+        }
+
+        /**
+         * Return the half-width of the Wilson score interval of an outcome.
+         */
+        private double halfWidth(Outcome outcome)
+        {
+            if (trials == 0) {
+                return 0.5;
+            }
+            double p = getRate(outcome);
+            return Z / (1 + Z * Z / trials) * Math.sqrt(p * (1 - p) / trials + Z * Z / (4.0 * trials * trials));
+        }
+
+        /**
+         * Return whether the interval of every outcome is within the given
+         * half-width.
+         */
+        public boolean within(double halfWidth)
+        {
+            for (Outcome outcome : Outcome.values()) {
+                if (halfWidth(outcome) > halfWidth) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Return the number of trials played per second.
+         */
+        public double trialsPerSecond()
+        {
+            return elapsedNanos == 0 ? 0.0 : trials * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Return a summary of the estimate, one line per figure.
+         */
+        public String toString()
+        {
+            return String.format(
+                "Trials:     %d%n" +
+                "Goal:       %s%n" +
+                "Meal:       %s%n" +
+                "Timeout:    %s%n" +
+                "Unfinished: %s%n" +
+                "Throughput: %.0f trials/s",
+                trials, line(Outcome.GOAL), line(Outcome.MEAL), line(Outcome.TIMEOUT),
+                line(Outcome.PLAYING), trialsPerSecond());
+        }
+
+        private String line(Outcome outcome)
+        {
+            return String.format("%7.3f%% (95%%: %.3f%% .. %.3f%%)", 100 * getRate(outcome),
+                100 * getLower(outcome), 100 * getUpper(outcome));
+        }
+    }
+
+    /**
+     * Estimate the rates of a bot on a world and print them.
+     *
+     * @param args Bot ("random", "goal" or "collector"), maximum trials,
+     *             half-width, command limit, seed and map file, all optional.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        Bot bot          = Bots.named(args.length > 0 ? args[0] : "random");
+        long maxTrials   = args.length > 1 ? Long.parseLong(args[1]) : 10000000L;
+        double halfWidth = args.length > 2 ? Double.parseDouble(args[2]) : 0.001;
+        int maxCommands  = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        long seed        = args.length > 4 ? Long.parseLong(args[4]) : 0L;
+        World world      = args.length > 5 ? WorldLoader.load(Paths.get(args[5])) : World.london();
+
+        System.out.println(new WinEstimator(world, bot, maxCommands, seed).estimate(maxTrials, halfWidth));
+    }
+}
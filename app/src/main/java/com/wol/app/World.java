@@ -0,0 +1,416 @@
+package com.wol.app;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The layout of a world: its rooms, their exits, where the characters
+ * start, what they carry and which room is the goal.
+ *
+ * Rooms are numbered from 0. The exits of all rooms are kept in one flat
+ * buffer indexed by room * 4 + direction ordinal, holding NO_ROOM where
+ * there is no exit. Descriptions are interned: each distinct description
+ * is stored once and rooms refer to it by number. A world never changes
+ * once built, so any number of games may be created from it. Worlds are
+ * read by WorldLoader, either from a map file or from a memory-mapped
+ * snapshot.
+ *
+ * Games do not hold a Room object per room of their world; a Room is a
+ * thin view of one room number, see Board.
+ */
+public class World
+{
+    // Marks a missing exit or a character that is not in the world.
+    public static final int NO_ROOM = -1;
+    // The number of exits per room.
+    public static final int EXITS = Direction.values().length;
+
+    private final int rooms;
+    private final IntBuffer exits;
+    private final IntBuffer descriptionIds; // distinct description of each room
+    private final IntBuffer textOffsets; // distinct descriptions + 1 offsets into text
+    private final ByteBuffer text;       // UTF-8 distinct descriptions
+    private final String[] descriptions; // decoded lazily from text
+    private final int goal;
+    private final int[] placements;      // starting room by character ordinal
+    private final int[] items;           // starting item mask by character ordinal
+    private volatile DistanceOracle distances; // found on first use
+    private boolean single;              // whether made by single(), the only worlds changed
+
+    /**
+     * Create a world over the given buffers. The buffers may be backed by
+     * arrays or by a mapped file, and must not be changed afterwards.
+     *
+     * Pre-condition: exits holds rooms * EXITS entries, descriptionIds
+     * rooms entries and textOffsets one more entry than there are distinct
+     * descriptions; placements and items hold one entry per character.
+     */
+    World(int rooms, IntBuffer exits, IntBuffer descriptionIds, IntBuffer textOffsets,
+          ByteBuffer text, int goal, int[] placements, int[] items)
+    {
+        assert exits.limit() == rooms * EXITS : "World.World has wrong number of exits";
+        assert descriptionIds.limit() == rooms : "World.World has wrong number of descriptions";
+        assert placements.length == Character.count() : "World.World has wrong placements";
+        assert items.length == Character.count() : "World.World has wrong items";
+        this.rooms        = rooms;
+        this.exits          = exits;
+        this.descriptionIds = descriptionIds;
+        this.textOffsets    = textOffsets;
+        this.text         = text;
+        this.goal         = goal;
+        this.placements   = placements;
+        this.items        = items;
+        descriptions = new String[textOffsets.limit() - 1];
+    }
+
+    /**
+     * Return a world of a single room without exits, which no character
+     * is placed in. Exits of the room may be set with setExit().
+     */
+    static World single(String description)
+    {
+        assert description != null : "World.single has null description";
+        int[] placements = new int[Character.count()];
+        Arrays.fill(placements, NO_ROOM);
+        int[] exits = new int[EXITS];
+        Arrays.fill(exits, NO_ROOM);
+        byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+        World world = new World(1, IntBuffer.wrap(exits), IntBuffer.wrap(new int[1]),
+            IntBuffer.wrap(new int[] {0, bytes.length}), ByteBuffer.wrap(bytes),
+            0, placements, new int[Character.count()]);
+        world.single = true;
+        return world;
+    }
+
+    /**
+     * Return the ten rooms of the London map that ships with the game.
+     */
+    public static World london()
+    {
+        return London.WORLD;
+    }
+
+    // Loads the London map on first use.
+    private static class London
+    {
+        static final World WORLD = load();
+
+        private static World load()
+        {
+            try (InputStream in = World.class.getResourceAsStream("london.map")) {
+                assert in != null : "World.london has no map resource";
+                Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+                return WorldLoader.read(reader);
+            } catch (IOException e) {
+                throw new IllegalStateException("The London map is broken", e);
+            }
+        }
+    }
+
+    /**
+     * Return the number of rooms.
+     */
+    public int size()
+    {
+        return rooms;
+    }
+
+    /**
+     * Return the description of a room.
+     *
+     * Pre-condition: 0 <= room < size().
+     */
+    public String getDescription(int room)
+    {
+        assert 0 <= room && room < rooms : "World.getDescription has no such room";
+        int id = descriptionIds.get(room);
+        String description = descriptions[id];
+        if (description == null) {
+            int from = textOffsets.get(id);
+            int to   = textOffsets.get(id + 1);
+            byte[] bytes = new byte[to - from];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = text.get(from + i);
+            }
+            description = new String(bytes, StandardCharsets.UTF_8);
+            descriptions[id] = description; // racy but idempotent
+        }
+        return description;
+    }
+
+    /**
+     * Return the room reached from a room in the given direction, or NO_ROOM.
+     *
+     * Pre-condition: 0 <= room < size() and direction is not null.
+     */
+    public int getExit(int room, Direction direction)
+    {
+        return exits.get(room * EXITS + direction.ordinal());
+    }
+
+    /**
+     * Return the number of exits of a room.
+     *
+     * Pre-condition: 0 <= room < size().
+     */
+    public int exitCount(int room)
+    {
+        int count = 0;
+        for (int i = room * EXITS; i < (room + 1) * EXITS; i++) {
+            if (exits.get(i) != NO_ROOM) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the room reached through one of the exits of a room, each
+     * picked with equal probability by the given random bits, or NO_ROOM
+     * if the room has no exits.
+     *
+     * Pre-condition: 0 <= room < size().
+     */
+    public int randomExit(int room, long bits)
+    {
+        int count = exitCount(room);
+        if (count == 0) {
+            return NO_ROOM;
+        }
+        // Pick the n-th existing exit.
+        int n = (int) (((bits >>> 32) * count) >>> 32);
+        for (int i = room * EXITS; ; i++) {
+            if (exits.get(i) != NO_ROOM && n-- == 0) {
+                return exits.get(i);
+            }
+        }
+    }
+
+    /**
+     * Change an exit of a world built by single(). Worlds shared by games
+     * are never changed.
+     *
+     * Pre-condition: the world was built by single().
+     */
+    void setExit(int room, Direction direction, int neighbor)
+    {
+        assert single : "World.setExit changes a shared world";
+        exits.put(room * EXITS + direction.ordinal(), neighbor);
+        distances = null;
+    }
+
+    /**
+     * Return the distances between the rooms, found on first use.
+     */
+    public DistanceOracle distances()
+    {
+        DistanceOracle oracle = distances;
+        if (oracle == null) {
+            oracle = new DistanceOracle(this);
+            distances = oracle; // racy but idempotent
+        }
+        return oracle;
+    }
+
+    /**
+     * Return the number of distinct descriptions.
+     */
+    public int distinctDescriptions()
+    {
+        return descriptions.length;
+    }
+
+    /**
+     * Return the goal room.
+     */
+    public int getGoal()
+    {
+        return goal;
+    }
+
+    /**
+     * Return the starting room of a character, or NO_ROOM if it is not in this world.
+     */
+    public int getPlacement(Character c)
+    {
+        return placements[c.ordinal()];
+    }
+
+    /**
+     * Return the mask of items a character starts with, see Item.mask().
+     */
+    public int getItems(Character c)
+    {
+        return items[c.ordinal()];
+    }
+
+    // Buffers exposed to WorldLoader for writing snapshots.
+    IntBuffer exits()          { return exits.duplicate(); }
+    IntBuffer descriptionIds() { return descriptionIds.duplicate(); }
+    IntBuffer textOffsets()    { return textOffsets.duplicate(); }
+    ByteBuffer text()          { return text.duplicate(); }
+
+    /**
+     * Builds a world one room at a time.
+     */
+    public static class Builder
+    {
+        private int rooms;
+        private int[] exits = new int[16 * EXITS];
+        private int[] descriptionIds = new int[16];
+        private int distinct;
+        private int[] textOffsets = new int[17];
+        private byte[] text = new byte[256];
+        private final HashMap<String,Integer> interned = new HashMap<>();
+        private int goal = NO_ROOM;
+        private final int[] placements;
+        private final int[] items;
+
+        /**
+         * Create a builder for an empty world where no character is placed.
+         */
+        public Builder()
+        {
+            placements = new int[Character.count()];
+            Arrays.fill(placements, NO_ROOM);
+            items = new int[Character.count()];
+            for (Character c : Character.values()) {
+                items[c.ordinal()] = c.getItem() == null ? 0 : c.getItem().bit();
+            }
+        }
+
+        /**
+         * Add a room without exits.
+         *
+         * @param description The room's description.
+         * @return The number of the new room.
+         *
+         * Pre-condition: description is not null.
+         */
+        public int addRoom(String description)
+        {
+            assert description != null : "World.Builder.addRoom has null description";
+            if ((rooms + 1) * EXITS > exits.length) {
+                exits = Arrays.copyOf(exits, exits.length * 2);
+                descriptionIds = Arrays.copyOf(descriptionIds, descriptionIds.length * 2);
+            }
+            Arrays.fill(exits, rooms * EXITS, (rooms + 1) * EXITS, NO_ROOM);
+            descriptionIds[rooms] = intern(description);
+            return rooms++;
+        }
+
+        /**
+         * Return the number of a description, storing it if it is new.
+         */
+        private int intern(String description)
+        {
+            Integer id = interned.get(description);
+            if (id != null) {
+                return id;
+            }
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            if (distinct + 2 > textOffsets.length) {
+                textOffsets = Arrays.copyOf(textOffsets, textOffsets.length * 2);
+            }
+            int end = textOffsets[distinct];
+            if (end + bytes.length > text.length) {
+                text = Arrays.copyOf(text, Math.max(text.length * 2, end + bytes.length));
+            }
+            System.arraycopy(bytes, 0, text, end, bytes.length);
+            textOffsets[distinct + 1] = end + bytes.length;
+            interned.put(description, distinct);
+            return distinct++;
+        }
+
+        /**
+         * Return the number of rooms added so far.
+         */
+        public int size()
+        {
+            return rooms;
+        }
+
+        /**
+         * Define an exit from one room to another. The neighbor may be
+         * added later, but must exist when the world is built.
+         *
+         * Pre-condition: room has been added, neighbor is not negative
+         * and direction is not null.
+         */
+        public Builder setExit(int room, Direction direction, int neighbor)
+        {
+            assert 0 <= room && room < rooms : "World.Builder.setExit has no such room";
+            assert neighbor >= 0 : "World.Builder.setExit has negative neighbor";
+            exits[room * EXITS + direction.ordinal()] = neighbor;
+            return this;
+        }
+
+        /**
+         * Put a character into its starting room.
+         *
+         * Pre-condition: c is not null and room is not negative.
+         */
+        public Builder place(Character c, int room)
+        {
+            assert room >= 0 : "World.Builder.place has negative room";
+            placements[c.ordinal()] = room;
+            return this;
+        }
+
+        /**
+         * Set the items a character starts with, see Item.mask().
+         */
+        public Builder setItems(Character c, int mask)
+        {
+            items[c.ordinal()] = mask;
+            return this;
+        }
+
+        /**
+         * Set the goal room.
+         */
+        public Builder setGoal(int room)
+        {
+            assert room >= 0 : "World.Builder.setGoal has negative room";
+            goal = room;
+            return this;
+        }
+
+        /**
+         * Return the world built so far.
+         *
+         * @throws IllegalStateException if the goal or the player's room is
+         * missing, or an exit or placement refers to a room never added.
+         */
+        public World build()
+        {
+            if (goal < 0 || goal >= rooms) {
+                throw new IllegalStateException("the goal room " + goal + " does not exist");
+            }
+            for (Character c : Character.values()) {
+                int room = placements[c.ordinal()];
+                if (room >= rooms || (room == NO_ROOM && c == Character.PLAYER)) {
+                    throw new IllegalStateException(c.name() + " is not placed in an existing room");
+                }
+            }
+            for (int i = 0; i < rooms * EXITS; i++) {
+                if (exits[i] >= rooms) {
+                    throw new IllegalStateException("an exit of room " + i / EXITS
+                        + " leads to the missing room " + exits[i]);
+                }
+            }
+            return new World(rooms,
+                IntBuffer.wrap(Arrays.copyOf(exits, rooms * EXITS)),
+                IntBuffer.wrap(Arrays.copyOf(descriptionIds, rooms)),
+                IntBuffer.wrap(Arrays.copyOf(textOffsets, distinct + 1)),
+                ByteBuffer.wrap(Arrays.copyOf(text, textOffsets[distinct])),
+                goal, placements.clone(), items.clone());
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.wol.app;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Generates worlds of any size for measuring the engine at scale. <br/>
+ *
+ * A world is laid out as a grid, a tree or a city. In a grid every room
+ * leads to its four neighbours. In a tree every room but the first leads
+ * back to its parent and on to up to three children. A city is a grid
+ * whose rows are two-way streets, with an avenue every BLOCK columns,
+ * every other avenue one-way north, and alleys between the rows at random.
+ *
+ * The exits of a room only depend on its number, the size, the shape and
+ * the seed, so the rooms are filled in parallel straight into the arrays
+ * the world is made of. Rooms share a few dozen interned descriptions.
+ *
+ * The player starts in room 0 and the goal is the last room. As there is
+ * only one of each character, the NPC density says how crowded the rooms
+ * around the player start: the characters are placed at random among the
+ * rooms nearest to room 0, as many rooms as it takes to hold the density.
+ * The item share is the chance that a character carries each item of a
+ * meal; by default characters carry the items they carry in London.
+ */
+public class WorldGenerator
+{
+    /**
+     * The layouts generated.
+     */
+    public enum Shape
+    {
+        GRID, TREE, CITY
+    }
+
+    // The columns between avenues of a city.
+    static final int BLOCK = 8;
+    // The largest world generated.
+    public static final int MAX_ROOMS = 10000000;
+    // Descriptions rooms are given, by shape.
+    private static final String[] GRID_PLACES = {"in a square", "in a field", "on a crossing", "in a yard"};
+    private static final String[] TREE_PLACES = {"in a hall", "in a corridor", "in a chamber", "in a cellar"};
+    private static final String[] CITY_PLACES = {"on a street", "on an avenue", "in an alley", "in a shop"};
+    private static final String[] QUARTERS = {"north", "south", "east", "west", "old", "new", "upper", "lower"};
+    private static final Item[] MEAL = {Item.SANDWICH, Item.DRINK, Item.CRISPS};
+
+    private final Shape shape;
+    private final int rooms;
+    private final long seed;
+    private double npcDensity = 0.5;
+    private double itemShare = -1; // below 0 for the London items
+
+    /**
+     * Create a generator.
+     *
+     * @param shape The layout of the world.
+     * @param rooms The number of rooms.
+     * @param seed  The seed from which the layout and placements derive.
+     *
+     * Pre-condition: shape is not null and 1 <= rooms <= MAX_ROOMS.
+     */
+    public WorldGenerator(Shape shape, int rooms, long seed)
+    {
+        assert shape != null : "WorldGenerator.WorldGenerator has null shape";
+        assert 1 <= rooms && rooms <= MAX_ROOMS : "WorldGenerator.WorldGenerator has wrong rooms";
+        this.shape = shape;
+        this.rooms = rooms;
+        this.seed  = seed;
+    }
+
+    /**
+     * Set the number of characters per room around the player's start.
+     *
+     * Pre-condition: 0 < density <= 1.
+     */
+    public WorldGenerator setNpcDensity(double density)
+    {
+        assert 0 < density && density <= 1 : "WorldGenerator.setNpcDensity has wrong density";
+        npcDensity = density;
+        return this;
+    }
+
+    /**
+     * Set the chance that a character carries each item of a meal, or
+     * below 0 for the items characters carry in London.
+     *
+     * Pre-condition: share <= 1.
+     */
+    public WorldGenerator setItemShare(double share)
+    {
+        assert share <= 1 : "WorldGenerator.setItemShare has wrong share";
+        itemShare = share;
+        return this;
+    }
+
+    /**
+     * Return random bits for a room, or for a character at -1 - ordinal,
+     * different for every salt.
+     */
+    private long bits(long room, int salt)
+    {
+        return TickScheduler.mix(TickScheduler.mix(seed + room * 0x9E3779B97F4A7C15L) + salt);
+    }
+
+    /**
+     * Generate the world.
+     */
+    public World generate()
+    {
+        int[] exits = new int[rooms * World.EXITS];
+        int[] descriptionIds = new int[rooms];
+        String[] places = shape == Shape.GRID ? GRID_PLACES : shape == Shape.TREE ? TREE_PLACES : CITY_PLACES;
+        int width = (int) Math.ceil(Math.sqrt(rooms));
+        IntStream.range(0, rooms).parallel().forEach(room -> {
+            int base = room * World.EXITS;
+            Arrays.fill(exits, base, base + World.EXITS, World.NO_ROOM);
+            switch (shape) {
+                case GRID: grid(room, width, exits, base);  break;
+                case TREE: tree(room, exits, base);         break;
+                case CITY: city(room, width, exits, base);  break;
+            }
+            int place = shape == Shape.CITY ? cityPlace(room, width) : (int) (bits(room, 1) & 3);
+            descriptionIds[room] = place * QUARTERS.length + (int) (bits(room, 2) >>> 61);
+        });
+
+        // Intern the descriptions: place p in quarter q is p * QUARTERS.length + q.
+        ByteBuffer text = ByteBuffer.allocate(64 * places.length * QUARTERS.length);
+        int[] offsets = new int[places.length * QUARTERS.length + 1];
+        int id = 0;
+        for (String place : places) {
+            for (String quarter : QUARTERS) {
+                text.put((place + " of the " + quarter + " quarter").getBytes(StandardCharsets.UTF_8));
+                offsets[++id] = text.position();
+            }
+        }
+        text.flip();
+
+        int[] placements = new int[Character.count()];
+        int[] items = new int[Character.count()];
+        place(exits, placements, items);
+        return new World(rooms, IntBuffer.wrap(exits), IntBuffer.wrap(descriptionIds),
+            IntBuffer.wrap(offsets), text, rooms - 1, placements, items);
+    }
+
+    /**
+     * Set the exits of a room of a grid: to every neighbour.
+     */
+    private void grid(int room, int width, int[] exits, int base)
+    {
+        int x = room % width;
+        if (room >= width) {
+            exits[base + Direction.NORTH.ordinal()] = room - width;
+        }
+        if (room + width < rooms) {
+            exits[base + Direction.SOUTH.ordinal()] = room + width;
+        }
+        if (x > 0) {
+            exits[base + Direction.WEST.ordinal()] = room - 1;
+        }
+        if (x + 1 < width && room + 1 < rooms) {
+            exits[base + Direction.EAST.ordinal()] = room + 1;
+        }
+    }
+
+    /**
+     * Set the exits of a room of a tree. Room r > 0 hangs below room
+     * (r - 1) / 3, which reaches it through the (r - 1) % 3-th of its
+     * directions other than the one leading back to its own parent.
+     */
+    private void tree(int room, int[] exits, int base)
+    {
+        int back = back(room);
+        if (room > 0) {
+            exits[base + back] = (room - 1) / 3;
+        }
+        for (int child = 0; child < 3; child++) {
+            long target = 3L * room + child + 1;
+            if (target < rooms) {
+                exits[base + direction(back, child)] = (int) target;
+            }
+        }
+    }
+
+    /**
+     * Return the ordinal of the direction leading from a room of a tree to
+     * its parent; for room 0, which has none, that of SOUTH.
+     */
+    private static int back(int room)
+    {
+        if (room == 0) {
+            return Direction.SOUTH.ordinal();
+        }
+        int parent = (room - 1) / 3;
+        return (direction(back(parent), (room - 1) % 3) + 2) % World.EXITS;
+    }
+
+    /**
+     * Return the ordinal of the child-th direction other than back.
+     */
+    private static int direction(int back, int child)
+    {
+        return child < back ? child : child + 1;
+    }
+
+    /**
+     * Set the exits of a room of a city.
+     */
+    private void city(int room, int width, int[] exits, int base)
+    {
+        int x = room % width;
+        // Streets run along every row, both ways.
+        if (x > 0) {
+            exits[base + Direction.WEST.ordinal()] = room - 1;
+        }
+        if (x + 1 < width && room + 1 < rooms) {
+            exits[base + Direction.EAST.ordinal()] = room + 1;
+        }
+        // Avenues run along every BLOCK-th column, every other one north only;
+        // alleys join a quarter of the other rooms to the rows next to them.
+        boolean avenue = x % BLOCK == 0;
+        boolean oneWay = avenue && (x / BLOCK) % 2 == 1;
+        if (room >= width && (avenue || alley(room - width))) {
+            exits[base + Direction.NORTH.ordinal()] = room - width;
+        }
+        if (room + width < rooms && (avenue && !oneWay || !avenue && alley(room))) {
+            exits[base + Direction.SOUTH.ordinal()] = room + width;
+        }
+    }
+
+    /**
+     * Return whether an alley joins a room of a city to the room south of it.
+     */
+    private boolean alley(int room)
+    {
+        return (bits(room, 3) & 3) == 0;
+    }
+
+    /**
+     * Return the place of a room of a city: a street, an avenue, an alley or a shop.
+     */
+    private int cityPlace(int room, int width)
+    {
+        int x = room % width;
+        if (x % BLOCK == 0) {
+            return 1;
+        }
+        return alley(room) ? 2 : (bits(room, 1) & 1) == 0 ? 0 : 3;
+    }
+
+    /**
+     * Place the characters and give them their items. The player starts in
+     * room 0, the others among the rooms nearest to it.
+     */
+    private void place(int[] exits, int[] placements, int[] items)
+    {
+        int others = Character.count() - 1;
+        int area = (int) Math.min(rooms, Math.ceil(others / npcDensity));
+        // The area rooms nearest to room 0, breadth first.
+        int[] nearest = new int[area];
+        BitSet seen = new BitSet(rooms);
+        int head = 0;
+        int tail = 0;
+        nearest[tail++] = 0;
+        seen.set(0);
+        while (head < tail && tail < area) {
+            int room = nearest[head++];
+            for (int d = 0; d < World.EXITS && tail < area; d++) {
+                int exit = exits[room * World.EXITS + d];
+                if (exit != World.NO_ROOM && !seen.get(exit)) {
+                    seen.set(exit);
+                    nearest[tail++] = exit;
+                }
+            }
+        }
+        for (Character c : Character.values()) {
+            if (c == Character.PLAYER) {
+                placements[c.ordinal()] = 0;
+                continue;
+            }
+            long bits = bits(-1 - c.ordinal(), 4);
+            placements[c.ordinal()] = nearest[(int) (((bits >>> 32) * tail) >>> 32)];
+            if (itemShare < 0) {
+                items[c.ordinal()] = c.getItem() == null ? 0 : Item.mask(c.getItem());
+            } else {
+                for (int i = 0; i < MEAL.length; i++) {
+                    if ((bits(-1 - c.ordinal(), 5 + i) >>> 11) * 0x1.0p-53 < itemShare) {
+                        items[c.ordinal()] |= Item.mask(MEAL[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generate a world and write it to a snapshot file, to be played or
+     * simulated like any map.
+     *
+     * @param args Shape ("grid", "tree" or "city"), rooms, snapshot file,
+     *             seed, NPC density and item share; the last three optional.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 3) {
+            System.err.println("Usage: WorldGenerator <grid|tree|city> <rooms> <snapshot file> "
+                + "[seed] [npc density] [item share]");
+            return;
+        }
+        WorldGenerator generator = new WorldGenerator(Shape.valueOf(args[0].toUpperCase()),
+            Integer.parseInt(args[1]), args.length > 3 ? Long.parseLong(args[3]) : 0L);
+        if (args.length > 4) {
+            generator.setNpcDensity(Double.parseDouble(args[4]));
+        }
+        if (args.length > 5) {
+            generator.setItemShare(Double.parseDouble(args[5]));
+        }
+        long start = System.nanoTime();
+        World world = generator.generate();
+        long elapsed = System.nanoTime() - start;
+        WorldLoader.writeSnapshot(world, Paths.get(args[2]));
+        System.out.printf("Generated %d rooms in %.0f ms and wrote them to %s%n",
+            world.size(), elapsed / 1e6, args[2]);
+    }
+}
@@ -0,0 +1,362 @@
+package com.wol.app;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * Reads worlds from map files and snapshots. <br/>
+ *
+ * A map file is read line by line, so only the world being built is held
+ * in memory. Blank lines and lines starting with '#' are ignored, every
+ * other line is one of:
+ *
+ * <pre>
+ *   room &lt;north&gt; &lt;west&gt; &lt;south&gt; &lt;east&gt; &lt;description&gt;
+ *   character &lt;NAME&gt; &lt;room&gt; [&lt;item&gt;... | -]
+ *   goal &lt;room&gt;
+ * </pre>
+ *
+ * Rooms are numbered from 0 in the order of their lines; an exit is the
+ * number of the neighboring room, or '-' if there is none. A character
+ * without items listed keeps its usual item, '-' leaves it empty-handed.
+ *
+ * A snapshot holds the same world in binary form and is memory-mapped
+ * when loaded, so large worlds start without being parsed again.
+ */
+public class WorldLoader
+{
+    // "WOLW", the first int of every snapshot.
+    private static final int MAGIC = 0x574F4C57;
+    private static final int VERSION = 2;
+    // Snapshots are written through a buffer of this size.
+    private static final int CHUNK = 1 << 16;
+
+    private static final HashMap<String,Character> CHARACTERS = new HashMap<>();
+    private static final HashMap<String,Item> ITEMS = new HashMap<>();
+    static {
+        for (Character c : Character.values()) {
+            CHARACTERS.put(c.name(), c);
+        }
+        for (Item item : Item.values()) {
+            ITEMS.put(item.toString(), item);
+        }
+    }
+
+    /**
+     * Load a world from a file, which may be a map file or a snapshot.
+     *
+     * @param path The file to load.
+     * @return The world in the file.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    public static World load(Path path) throws IOException
+    {
+        if (isSnapshot(path)) {
+            return mapSnapshot(path);
+        }
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Read a world from a map file.
+     *
+     * @param in The map file's text.
+     * @return The world described.
+     * @throws IOException if the text cannot be read or is malformed.
+     */
+    public static World read(Reader in) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(in, CHUNK);
+        World.Builder builder = new World.Builder();
+        String line;
+        int number = 0;
+
+        while ((line = reader.readLine()) != null) {
+            number++;
+            Tokens tokens = new Tokens(line, number);
+            String word = tokens.next();
+            if (word == null || word.startsWith("#")) {
+                continue;
+            }
+            switch (word) {
+                case "room" :
+                    int[] exits = new int[World.EXITS];
+                    for (int i = 0; i < exits.length; i++) {
+                        exits[i] = tokens.room(true);
+                    }
+                    int room = builder.addRoom(tokens.rest());
+                    for (Direction direction : Direction.values()) {
+                        if (exits[direction.ordinal()] != World.NO_ROOM) {
+                            builder.setExit(room, direction, exits[direction.ordinal()]);
+                        }
+                    }
+                    break;
+                case "character" :
+                    Character c = CHARACTERS.get(tokens.next());
+                    if (c == null) {
+                        throw tokens.error("unknown character");
+                    }
+                    builder.place(c, tokens.room(false));
+                    String name = tokens.next();
+                    if (name != null) {
+                        int mask = 0;
+                        for (; name != null && !name.equals("-"); name = tokens.next()) {
+                            Item item = ITEMS.get(name);
+                            if (item == null) {
+                                throw tokens.error("unknown item " + name);
+                            }
+                            mask |= item.bit();
+                        }
+                        builder.setItems(c, mask);
+                    }
+                    break;
+                case "goal" :
+                    builder.setGoal(tokens.room(false));
+                    break;
+                default :
+                    throw tokens.error("unknown entry " + word);
+            }
+        }
+
+        try {
+            return builder.build();
+        } catch (IllegalStateException e) {
+            throw new IOException("Malformed map: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Return whether a file starts like a snapshot.
+     */
+    public static boolean isSnapshot(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Write a world to a snapshot file, replacing the file if it exists.
+     *
+     * @param world The world to write.
+     * @param path  The snapshot file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void writeSnapshot(World world, Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK);
+            buffer.putInt(MAGIC).putInt(VERSION)
+                .putInt(world.size()).putInt(world.distinctDescriptions())
+                .putInt(world.getGoal()).putInt(Character.count());
+            for (Character c : Character.values()) {
+                buffer.putInt(world.getPlacement(c));
+            }
+            for (Character c : Character.values()) {
+                buffer.putInt(world.getItems(c));
+            }
+            IntBuffer exits = world.exits();
+            while (exits.hasRemaining()) {
+                buffer = room(channel, buffer, 4);
+                buffer.putInt(exits.get());
+            }
+            IntBuffer ids = world.descriptionIds();
+            while (ids.hasRemaining()) {
+                buffer = room(channel, buffer, 4);
+                buffer.putInt(ids.get());
+            }
+            IntBuffer offsets = world.textOffsets();
+            while (offsets.hasRemaining()) {
+                buffer = room(channel, buffer, 4);
+                buffer.putInt(offsets.get());
+            }
+            ByteBuffer text = world.text();
+            while (text.hasRemaining()) {
+                buffer = room(channel, buffer, 1);
+                buffer.put(text.get());
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Make room for the given number of bytes, writing the buffer out if it is full.
+     */
+    private static ByteBuffer room(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException
+    {
+        if (buffer.remaining() < bytes) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    /**
+     * Map a snapshot file into memory. The exits and descriptions of the
+     * world are read straight from the mapping.
+     *
+     * @param path The snapshot file.
+     * @return The world in the snapshot.
+     * @throws IOException if the file cannot be mapped or is not a valid snapshot.
+     */
+    public static World mapSnapshot(Path path) throws IOException
+    {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (map.getInt() != MAGIC || map.getInt() != VERSION) {
+                throw new IOException(path + " is not a version " + VERSION + " snapshot");
+            }
+            int rooms    = map.getInt();
+            int distinct = map.getInt();
+            int goal     = map.getInt();
+            if (map.getInt() != Character.count()) {
+                throw new IOException(path + " was written for other characters");
+            }
+            int[] placements = new int[Character.count()];
+            for (int i = 0; i < placements.length; i++) {
+                placements[i] = map.getInt();
+            }
+            int[] masks = new int[Character.count()];
+            for (int i = 0; i < masks.length; i++) {
+                masks[i] = map.getInt();
+            }
+            IntBuffer exits = slice(map, rooms * World.EXITS * 4).asIntBuffer();
+            IntBuffer ids = slice(map, rooms * 4).asIntBuffer();
+            IntBuffer offsets = slice(map, (distinct + 1) * 4).asIntBuffer();
+            ByteBuffer text = slice(map, offsets.get(distinct));
+            return new World(rooms, exits, ids, offsets, text, goal, placements, masks);
+        } catch (RuntimeException e) {
+            throw new IOException(path + " is a broken snapshot", e);
+        }
+    }
+
+    /**
+     * Return the next bytes of a buffer as a buffer of their own, and skip them.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int bytes)
+    {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(bytes);
+        buffer.position(buffer.position() + bytes);
+        return slice;
+    }
+
+    /**
+     * Convert a map file into a snapshot.
+     *
+     * @param args The map file and the snapshot file.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2) {
+            System.err.println("Usage: WorldLoader <map file> <snapshot file>");
+            return;
+        }
+        World world = load(Paths.get(args[0]));
+        writeSnapshot(world, Paths.get(args[1]));
+        System.out.println("Wrote " + world.size() + " rooms to " + args[1]);
+    }
+
+    /**
+     * The words of one line of a map file.
+     */
+    private static class Tokens
+    {
+        private final String line;
+        private final int number;
+        private int position;
+
+        Tokens(String line, int number)
+        {
+            this.line   = line;
+            this.number = number;
+        }
+
+        /**
+         * Return the next word, or null at the end of the line.
+         */
+        String next()
+        {
+            skipSpaces();
+            if (position == line.length()) {
+                return null;
+            }
+            int start = position;
+            while (position < line.length() && !java.lang.Character.isWhitespace(line.charAt(position))) {
+                position++;
+            }
+            return line.substring(start, position);
+        }
+
+        /**
+         * Return the next word as a room number, or NO_ROOM for '-' if allowed.
+         */
+        int room(boolean optional) throws IOException
+        {
+            String word = next();
+            if (word == null) {
+                throw error("missing room number");
+            }
+            if (optional && word.equals("-")) {
+                return World.NO_ROOM;
+            }
+            try {
+                int room = Integer.parseInt(word);
+                if (room < 0) {
+                    throw error("negative room number " + word);
+                }
+                return room;
+            } catch (NumberFormatException e) {
+                throw error("bad room number " + word);
+            }
+        }
+
+        /**
+         * Return the rest of the line without surrounding spaces.
+         */
+        String rest()
+        {
+            skipSpaces();
+            String rest = line.substring(position).trim();
+            position = line.length();
+            return rest;
+        }
+
+        IOException error(String message)
+        {
+            return new IOException("Malformed map, line " + number + ": " + message);
+        }
+
+        private void skipSpaces()
+        {
+            while (position < line.length() && java.lang.Character.isWhitespace(line.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
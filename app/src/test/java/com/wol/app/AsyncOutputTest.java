@@ -0,0 +1,146 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * The test class AsyncOutputTest.
+ */
+public class AsyncOutputTest {
+
+	/**
+	 * A channel collecting what is written, taking its time if asked to,
+	 * and failing once it has received the given number of bytes.
+	 */
+	private static class Collector implements WritableByteChannel {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final long delayMillis;
+		final int failAfter;
+		int writes;
+		boolean open = true;
+
+		Collector(long delayMillis, int failAfter) {
+			this.delayMillis = delayMillis;
+			this.failAfter = failAfter;
+		}
+
+		public synchronized int write(ByteBuffer src) throws IOException {
+			if (bytes.size() >= failAfter) {
+				throw new IOException("broken pipe");
+			}
+			try {
+				Thread.sleep(delayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			writes++;
+			int n = src.remaining();
+			while (src.hasRemaining()) {
+				bytes.write(src.get());
+			}
+			return n;
+		}
+
+		public boolean isOpen() {
+			return open;
+		}
+
+		public void close() {
+			open = false;
+		}
+
+		synchronized String text() {
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Test that everything written arrives in order, and that a slow
+	 * channel gets fewer writes than there are messages.
+	 */
+	@Test
+	public void testCoalesced() throws IOException {
+		Collector channel = new Collector(1, Integer.MAX_VALUE);
+		AsyncOutput out = new AsyncOutput(channel, 4, 256);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			String message = "message " + i + " from Trafalgar Square £\n";
+			out.write(message);
+			out.flush();
+			expected.append(message);
+		}
+		out.drain();
+		assertEquals(expected.toString(), channel.text());
+		assertEquals(expected.toString().getBytes(StandardCharsets.UTF_8).length, out.getBytes());
+		out.close();
+		assertFalse(channel.isOpen());
+		assertTrue(out.getWrites() < 2000);
+	}
+
+	/**
+	 * Test that messages larger than a buffer are split over buffers.
+	 */
+	@Test
+	public void testLargeMessage() throws IOException {
+		Collector channel = new Collector(0, Integer.MAX_VALUE);
+		AsyncOutput out = new AsyncOutput(channel, 2, 16);
+		StringBuilder message = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			message.append((char) ('a' + i % 26));
+		}
+		out.write(message);
+		out.close();
+		assertEquals(message.toString(), channel.text());
+	}
+
+	/**
+	 * Test that a failure to write is reported to the writer of the game.
+	 */
+	@Test
+	public void testFailure() {
+		Collector channel = new Collector(0, 10);
+		AsyncOutput out = new AsyncOutput(channel, 2, 16);
+		try {
+			for (int i = 0; i < 1000; i++) {
+				out.write("0123456789");
+				out.flush();
+			}
+			out.drain();
+			fail("A broken channel must be reported");
+		} catch (UncheckedIOException e) {
+			assertEquals("broken pipe", e.getCause().getMessage());
+		}
+		try {
+			out.close();
+			fail("A broken channel must be reported on close");
+		} catch (IOException e) {
+			assertEquals("broken pipe", e.getMessage());
+		}
+		assertFalse(channel.isOpen());
+	}
+
+	/**
+	 * Test that play() writes the game to a sink.
+	 */
+	@Test
+	public void testPlay() throws IOException {
+		Collector channel = new Collector(0, Integer.MAX_VALUE);
+		Game game = new Game(World.london(), 1L);
+		GameMain ui = new GameMain(game, new Parser(new ByteArrayInputStream("look\nquit\n".getBytes())));
+		try (AsyncOutput out = new AsyncOutput(channel)) {
+			ui.setOutput(out);
+			ui.play();
+		}
+		assertTrue(channel.text().startsWith(game.welcome()));
+		assertTrue(channel.text().endsWith("> Thank you for playing.  Good bye.\n"));
+	}
+}
@@ -0,0 +1,138 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * The test class BehavioursTest.
+ */
+public class BehavioursTest {
+
+	/**
+	 * Return a world of rooms in a row, each leading east and west to its
+	 * neighbours, with the player and goal in the first room.
+	 */
+	private static World row(int rooms) {
+		World.Builder builder = new World.Builder();
+		for (int room = 0; room < rooms; room++) {
+			builder.addRoom("in room " + room);
+		}
+		for (int room = 0; room + 1 < rooms; room++) {
+			builder.setExit(room, Direction.EAST, room + 1).setExit(room + 1, Direction.WEST, room);
+		}
+		return builder.place(Character.PLAYER, 0).setGoal(0).build();
+	}
+
+	/**
+	 * Return a board with the given characters in the given rooms.
+	 */
+	private static Board board(World world, Character[] characters, int[] rooms, int[] items) {
+		Board board = new Board(world, new SplittableRandom());
+		for (int i = 0; i < characters.length; i++) {
+			board.room(rooms[i]).addCharacter(new CharacterState(characters[i], items[i]));
+		}
+		return board;
+	}
+
+	/**
+	 * Test that seek walks to its room along a shortest way and passes there.
+	 */
+	@Test
+	public void testSeek() {
+		World world = row(8);
+		Board board = board(world, new Character[] {Character.COOKIE_MONSTER}, new int[] {0}, new int[] {0});
+		CharacterState monster = board.getCharacters()[Character.COOKIE_MONSTER.ordinal()];
+		Behaviour seek = Behaviours.seek(world, 5);
+		for (int step = 1; step <= 5; step++) {
+			int room = seek.choose(world, monster, null, 0);
+			assertEquals(step, room);
+			board.room(step - 1).removeCharacter(monster);
+			board.room(room).addCharacter(monster);
+		}
+		assertEquals(Behaviour.PASS, seek.choose(world, monster, null, 0));
+	}
+
+	/**
+	 * Test that follow catches up with the player and stays there, and
+	 * flee keeps away from the player while it is in range.
+	 */
+	@Test
+	public void testFollowAndFlee() {
+		World world = row(10);
+		Board board = board(world,
+			new Character[] {Character.PLAYER, Character.COOKIE_MONSTER, Character.CRISP_GIVER},
+			new int[] {3, 7, 5}, new int[] {0, 0, 0});
+		CharacterState player  = board.getCharacters()[Character.PLAYER.ordinal()];
+		CharacterState monster = board.getCharacters()[Character.COOKIE_MONSTER.ordinal()];
+		CharacterState giver   = board.getCharacters()[Character.CRISP_GIVER.ordinal()];
+
+		assertEquals(6, Behaviours.follow(world).choose(world, monster, player, 0));
+		assertEquals(World.NO_ROOM, Behaviours.follow(world).choose(world, player, player, 0));
+		assertEquals(6, Behaviours.flee(world, 2).choose(world, giver, player, 0));
+		assertEquals(Behaviour.PASS, Behaviours.flee(world, 1).choose(world, giver, player, 0));
+	}
+
+	/**
+	 * Test that first chooses what the first behaviour not passing chooses.
+	 */
+	@Test
+	public void testFirst() {
+		World world = row(4);
+		Board board = board(world, new Character[] {Character.COOKIE_MONSTER}, new int[] {2}, new int[] {0});
+		CharacterState monster = board.getCharacters()[Character.COOKIE_MONSTER.ordinal()];
+		assertEquals(1, Behaviours.first(Behaviours.seek(world, 2), Behaviours.seek(world, 0))
+			.choose(world, monster, null, 0));
+		assertEquals(World.NO_ROOM, Behaviours.first(Behaviours.seek(world, 2), Behaviours.STAY)
+			.choose(world, monster, null, 0));
+		assertEquals(Behaviour.PASS, Behaviours.first(Behaviours.seek(world, 2))
+			.choose(world, monster, null, 0));
+	}
+
+	/**
+	 * Test that characters steered by a game's scheduler follow the player,
+	 * and that a trader entering a room swaps items with its occupant.
+	 */
+	@Test
+	public void testTickAndTrade() {
+		World world = row(6);
+		Board board = board(world,
+			new Character[] {Character.PLAYER, Character.LAURA, Character.CRISP_GIVER},
+			new int[] {0, 5, 1}, new int[] {Item.mask(Item.DRINK), 0, Item.mask(Item.CRISPS)});
+		board.setBehaviour(Character.LAURA.ordinal(), Behaviours.follow(world));
+		board.setBehaviour(Character.CRISP_GIVER.ordinal(), Behaviours.seek(world, 0));
+		board.setAct(Character.CRISP_GIVER.ordinal(), Behaviours.TRADE);
+		TickScheduler scheduler = new TickScheduler(board);
+		for (long seed = 0; seed < 5; seed++) {
+			scheduler.tick(seed);
+		}
+		CharacterState player  = board.getCharacters()[Character.PLAYER.ordinal()];
+		CharacterState laura = board.getCharacters()[Character.LAURA.ordinal()];
+		CharacterState giver   = board.getCharacters()[Character.CRISP_GIVER.ordinal()];
+		assertEquals(0, laura.getRoom().getId());
+		assertEquals(0, giver.getRoom().getId());
+		assertTrue(player.has(Item.CRISPS));
+		assertFalse(player.has(Item.DRINK));
+		assertTrue(giver.has(Item.DRINK));
+	}
+
+	/**
+	 * Test that a profile counts the calls of what it wraps.
+	 */
+	@Test
+	public void testProfile() {
+		World world = row(3);
+		Board board = board(world, new Character[] {Character.COOKIE_MONSTER}, new int[] {0}, new int[] {0});
+		CharacterState monster = board.getCharacters()[Character.COOKIE_MONSTER.ordinal()];
+		Behaviours.Profile profile = new Behaviours.Profile();
+		Behaviour seek = profile.wrap("seek", Behaviours.seek(world, 2));
+		for (int i = 0; i < 3; i++) {
+			assertEquals(1, seek.choose(world, monster, null, 0));
+		}
+		assertEquals(3, profile.getCalls("seek"));
+		assertEquals(0, profile.getCalls("flee"));
+		assertTrue(profile.toString().contains("seek"));
+	}
+}
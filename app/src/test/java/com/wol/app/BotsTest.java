@@ -0,0 +1,72 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * The test class BotsTest.
+ */
+public class BotsTest {
+
+	/**
+	 * Play a game with a bot until it finishes or the bot issued the given
+	 * number of commands, and return how it ended.
+	 */
+	private static Outcome play(Bot bot, long seed, int commands) {
+		Game game = new Game(World.london(), seed);
+		GameMain ui = new GameMain(game, new Parser(new ByteArrayInputStream(new byte[0])));
+		SplittableRandom random = new SplittableRandom(seed);
+		for (int i = 0; i < commands && !game.finished(); i++) {
+			Command command = bot.next(game, random);
+			if (command == null) {
+				break;
+			}
+			command.execute(ui, game);
+		}
+		return game.getOutcome();
+	}
+
+	/**
+	 * Test that the parser returns the shared commands.
+	 */
+	@Test
+	public void testCommands() {
+		Parser parser = new Parser(new ByteArrayInputStream(new byte[0]));
+		assertSame(Commands.go(Direction.NORTH), parser.parse("go north"));
+		assertSame(Commands.take(Item.CRISPS), parser.parse("take crisps"));
+		assertSame(Commands.eat(), parser.parse("eat"));
+		assertSame(Commands.unknown(), parser.parse("dance"));
+	}
+
+	/**
+	 * Test that the goal seeker reaches the goal of London on time.
+	 */
+	@Test
+	public void testGoalSeeker() {
+		for (long seed = 0; seed < 100; seed++) {
+			assertEquals(Outcome.GOAL, play(Bots.GOAL_SEEKER, seed, 100));
+		}
+	}
+
+	/**
+	 * Test that the item collector wins most games, and that random
+	 * walkers always end their games by some outcome other than quitting.
+	 */
+	@Test
+	public void testCollectorAndWalker() {
+		int wins = 0;
+		for (long seed = 0; seed < 100; seed++) {
+			Outcome outcome = play(Bots.ITEM_COLLECTOR, seed, 100);
+			if (outcome == Outcome.GOAL || outcome == Outcome.MEAL) {
+				wins++;
+			}
+			assertNotEquals(Outcome.QUIT, play(Bots.RANDOM_WALKER, seed, 1000));
+			assertNotEquals(Outcome.PLAYING, play(Bots.RANDOM_WALKER, seed, 1000));
+		}
+		assertTrue(wins >= 90);
+	}
+}
@@ -0,0 +1,135 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * The test class DistanceOracleTest.
+ */
+public class DistanceOracleTest {
+
+	/**
+	 * Return the distance from one room to another by a plain search.
+	 */
+	private static int bfs(World world, int from, int to) {
+		int[] distances = new int[world.size()];
+		Arrays.fill(distances, -1);
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		distances[from] = 0;
+		queue.add(from);
+		while (!queue.isEmpty()) {
+			int room = queue.poll();
+			for (Direction direction : Direction.values()) {
+				int exit = world.getExit(room, direction);
+				if (exit != World.NO_ROOM && distances[exit] < 0) {
+					distances[exit] = distances[room] + 1;
+					queue.add(exit);
+				}
+			}
+		}
+		return distances[to] < 0 ? DistanceOracle.UNREACHABLE : distances[to];
+	}
+
+	/**
+	 * Return a grid of rooms with some passages leading one way only and
+	 * some rooms walled off.
+	 */
+	private static World maze(int width, int height, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		World.Builder builder = new World.Builder();
+		for (int room = 0; room < width * height; room++) {
+			builder.addRoom("in cell " + room);
+		}
+		for (int room = 0; room < width * height; room++) {
+			if (room >= width && random.nextInt(10) > 0) {
+				builder.setExit(room, Direction.NORTH, room - width);
+				if (random.nextInt(5) > 0) {
+					builder.setExit(room - width, Direction.SOUTH, room);
+				}
+			}
+			if (room % width > 0 && random.nextInt(10) > 0) {
+				builder.setExit(room, Direction.WEST, room - 1);
+				if (random.nextInt(5) > 0) {
+					builder.setExit(room - 1, Direction.EAST, room);
+				}
+			}
+		}
+		return builder.place(Character.PLAYER, 0).setGoal(width * height / 2).build();
+	}
+
+	/**
+	 * Test the distances between all rooms of London.
+	 */
+	@Test
+	public void testLondon() {
+		World world = World.london();
+		DistanceOracle oracle = world.distances();
+		assertSame(oracle, world.distances());
+		for (int from = 0; from < world.size(); from++) {
+			assertEquals(bfs(world, from, world.getGoal()), oracle.toGoal(from));
+			for (int to = 0; to < world.size(); to++) {
+				assertEquals(bfs(world, from, to), oracle.distance(from, to));
+				assertEquals(oracle.distance(from, to), oracle.lowerBound(from, to));
+			}
+		}
+	}
+
+	/**
+	 * Test the distances of a world too large for a table, with one-way
+	 * exits and rooms that cannot be reached.
+	 */
+	@Test
+	public void testLandmarks() {
+		World world = maze(60, 40, 1L);
+		assertTrue(world.size() > DistanceOracle.EXACT_ROOMS);
+		DistanceOracle oracle = new DistanceOracle(world);
+		SplittableRandom random = new SplittableRandom(2L);
+		for (int i = 0; i < 300; i++) {
+			int from = random.nextInt(world.size());
+			int to   = random.nextInt(world.size());
+			int distance = bfs(world, from, to);
+			assertEquals(distance, oracle.distance(from, to));
+			assertTrue(oracle.lowerBound(from, to) <= distance);
+			assertEquals(bfs(world, from, world.getGoal()), oracle.toGoal(from));
+		}
+	}
+
+	/**
+	 * Following the hints reaches the goal.
+	 */
+	@Test
+	public void testHint() {
+		Game game = new Game(World.london(), 3L);
+		assertTrue(game.isWinnable());
+		Parser parser = new Parser(new ByteArrayInputStream(new byte[0]));
+		GameMain ui = new GameMain(game, parser);
+		while (!game.finished()) {
+			String hint = parser.parse("hint").process(ui, game);
+			assertTrue(hint, hint.startsWith("The goal is "));
+			String direction = hint.substring(hint.indexOf("; go ") + 5, hint.indexOf('.'));
+			parser.parse("go " + direction).process(ui, game);
+		}
+		assertEquals(Outcome.GOAL, game.getOutcome());
+		assertTrue(game.isWinnable());
+	}
+
+	/**
+	 * A game is not winnable once there is too little time left.
+	 */
+	@Test
+	public void testOutOfTime() {
+		Game game = new Game(World.london(), 3L);
+		for (int i = 0; i < 12; i++) {
+			game.goRoom(Direction.NORTH, false); // St Pancras has no exit north
+		}
+		assertEquals(1, game.movesLeft());
+		assertFalse(game.isWinnable());
+		assertTrue(game.hint().endsWith("You do not have enough time left to reach it."));
+	}
+}
@@ -0,0 +1,156 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The test class EventLogTest.
+ */
+public class EventLogTest {
+	private Path file;
+	private Path snapshot;
+	private Parser parser;
+
+	/**
+	 * Sets up the test fixture.
+	 *
+	 * Called before every test case method.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("game", ".events");
+		snapshot = file.resolveSibling(file.getFileName() + ".snapshot");
+		parser = new Parser(new ByteArrayInputStream(new byte[0]));
+	}
+
+	/**
+	 * Tears down the test fixture.
+	 *
+	 * Called after every test case method.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		Files.delete(file);
+		Files.deleteIfExists(snapshot);
+	}
+
+	/**
+	 * Play the given lines.
+	 */
+	private void play(Game game, String... lines) {
+		GameMain ui = new GameMain(game, parser);
+		for (String line : lines) {
+			parser.parse(line).execute(ui, game);
+		}
+	}
+
+	/**
+	 * Return the state of a game as text.
+	 */
+	private static String state(Game game) {
+		StringBuilder state = new StringBuilder();
+		state.append(game.getTime()).append(' ').append(game.getOutcome());
+		for (Character c : Character.values()) {
+			CharacterState s = game.getCharacterState(c);
+			state.append(' ').append(s.getRoom() == null ? -1 : s.getRoom().getId()).append('/').append(s.getItems());
+		}
+		return state.append(' ').append(game.look()).toString();
+	}
+
+	/**
+	 * A game is restored from its snapshot and the events after it, and
+	 * goes on as if it had not been interrupted.
+	 */
+	@Test
+	public void testRestore() throws IOException {
+		Game game = new Game(World.london(), 5L);
+		try (EventLog log = EventLog.create(file, game, 4)) {
+			play(game, "random", "take crisps", "random", "random", "look", "go west", "random");
+			assertTrue(log.size() > 4);
+		}
+
+		try (EventLog log = EventLog.restore(file, World.london(), 4)) {
+			Game restored = log.getGame();
+			assertEquals(state(game), state(restored));
+			play(game, "random", "random", "take drink");
+			play(restored, "random", "random", "take drink");
+			assertEquals(state(game), state(restored));
+		}
+
+		try (EventLog log = EventLog.restore(file, World.london(), 4)) {
+			assertEquals(state(game), state(log.getGame()));
+		}
+	}
+
+	/**
+	 * A finished game is restored finished.
+	 */
+	@Test
+	public void testFinished() throws IOException {
+		Game game = new Game(World.london(), 9L);
+		try (EventLog log = EventLog.create(file, game, EventLog.INTERVAL)) {
+			play(game, "random", "quit");
+		}
+		try (EventLog log = EventLog.restore(file, World.london(), EventLog.INTERVAL)) {
+			Game restored = log.getGame();
+			assertTrue(restored.finished());
+			assertEquals(Outcome.QUIT, restored.getOutcome());
+			assertEquals(state(game), state(restored));
+		}
+	}
+
+	/**
+	 * A game whose log was never closed, as after a crash, is restored
+	 * with every command that finished.
+	 */
+	@Test
+	public void testUnclosed() throws IOException {
+		Game game = new Game(World.london(), 7L);
+		EventLog log = EventLog.create(file, game, EventLog.INTERVAL);
+		try {
+			play(game, "random", "take crisps", "random", "look");
+			assertTrue(log.size() > 0);
+			try (EventLog restored = EventLog.restore(file, World.london(), EventLog.INTERVAL)) {
+				assertEquals(log.size(), restored.size());
+				assertEquals(state(game), state(restored.getGame()));
+			}
+		} finally {
+			log.close();
+		}
+	}
+
+	/**
+	 * An event cut short at the end of the log is ignored.
+	 */
+	@Test
+	public void testTornTail() throws IOException {
+		Game game = new Game(World.london(), 11L);
+		try (EventLog log = EventLog.create(file, game, 1000)) {
+			play(game, "random", "random", "look");
+		}
+		Files.write(file, new byte[] {1, 2, 3}, StandardOpenOption.APPEND);
+		try (EventLog log = EventLog.restore(file, World.london(), 1000)) {
+			assertEquals(state(game), state(log.getGame()));
+			assertEquals(0, (Files.size(file) - 20) % 8);
+		}
+	}
+
+	/**
+	 * A log is not restored on another world.
+	 */
+	@Test(expected = IOException.class)
+	public void testOtherWorld() throws IOException {
+		try (EventLog log = EventLog.create(file, new Game(World.london(), 1L), 10)) {
+		}
+		EventLog.restore(file, World.single("nowhere"), 10);
+	}
+}
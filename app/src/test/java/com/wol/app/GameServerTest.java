@@ -0,0 +1,248 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The test class GameServerTest.
+ */
+public class GameServerTest {
+	private GameServer server;
+
+	/**
+	 * Sets up the test fixture.
+	 *
+	 * Called before every test case method.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		server = new GameServer(World.london(), 0);
+		server.start();
+	}
+
+	/**
+	 * Tears down the test fixture.
+	 *
+	 * Called after every test case method.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * A client connected to the server.
+	 */
+	private class Client implements AutoCloseable {
+		final Socket socket;
+		final BufferedReader in;
+		final OutputStream out;
+
+		Client() throws IOException {
+			socket = new Socket("localhost", server.getPort());
+			socket.setSoTimeout(5000);
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			out = socket.getOutputStream();
+		}
+
+		void send(String line) throws IOException {
+			out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+			out.flush();
+		}
+
+		/**
+		 * Read lines until the next prompt and return them.
+		 */
+		String answer() throws IOException {
+			StringBuilder answer = new StringBuilder();
+			int c;
+			while ((c = in.read()) >= 0) {
+				answer.append((char) c);
+				if (answer.length() >= 3 && answer.substring(answer.length() - 3).equals("\n> ")) {
+					break;
+				}
+			}
+			return answer.toString();
+		}
+
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Every connection gets a game of its own.
+	 */
+	@Test
+	public void testSessions() throws IOException {
+		try (Client first = new Client(); Client second = new Client()) {
+			assertTrue(first.answer().contains("Welcome to the World of London!"));
+			assertTrue(second.answer().contains("Welcome to the World of London!"));
+
+			first.send("go west");
+			assertTrue(first.answer().startsWith("You are in the British Library."));
+			second.send("look");
+			assertTrue(second.answer().startsWith("You are in St Pancras."));
+		}
+	}
+
+	/**
+	 * The connection is closed when the game finishes.
+	 */
+	@Test
+	public void testQuit() throws IOException {
+		try (Client client = new Client()) {
+			client.answer();
+			client.send("quit");
+			assertTrue(client.answer().startsWith("Thank you for playing."));
+			assertEquals(-1, client.in.read());
+		}
+	}
+
+	/**
+	 * A client that never reads does not stall the others.
+	 */
+	@Test
+	public void testSlowClient() throws IOException {
+		try (Client slow = new Client()) {
+			StringBuilder burst = new StringBuilder();
+			for (int i = 0; i < 2000; i++) {
+				burst.append("help\n");
+			}
+			slow.out.write(burst.toString().getBytes(StandardCharsets.UTF_8));
+			slow.out.flush();
+
+			for (int i = 0; i < 50; i++) {
+				try (Client client = new Client()) {
+					client.answer();
+					client.send("look");
+					assertTrue(client.answer().startsWith("You are in St Pancras."));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that a client goes on with a game saved under a name after
+	 * connecting again, and that other clients reach only the games whose
+	 * names they know.
+	 */
+	@Test
+	public void testSaves() throws IOException {
+		Path file = Files.createTempFile("games", ".store");
+		Files.delete(file);
+		try (SessionStore store = new SessionStore(file, World.london(), 16)) {
+			server.close();
+			server = new GameServer(World.london(), 0, store);
+			server.start();
+			try (Client client = new Client()) {
+				assertTrue(client.answer().contains("'save <name>'"));
+				client.send("go west");
+				client.answer();
+				client.send("save secret");
+				assertTrue(client.answer().startsWith("Game saved as secret."));
+			}
+			try (Client other = new Client()) {
+				other.answer();
+				other.send("load 0");
+				assertTrue(other.answer().startsWith("No game is saved as 0."));
+				other.send("load secret");
+				assertTrue(other.answer().startsWith("Game loaded as secret.\nYou are in the British Library."));
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Test that the players of a server with a shared world meet, and
+	 * that a player whose connection closes leaves the world.
+	 */
+	@Test
+	public void testShared() throws IOException, InterruptedException {
+		server.close();
+		SharedWorld world = new SharedWorld(World.london());
+		server = new GameServer(world, 0, null, 0);
+		server.start();
+		try (Client first = new Client()) {
+			first.answer();
+			try (Client second = new Client()) {
+				second.answer();
+				second.send("look");
+				assertTrue(second.answer().startsWith("You are in St Pancras."));
+				first.send("look");
+				assertTrue(first.answer().contains("\nPlayers: Player 2"));
+			}
+			// The server sees the second connection close in its own time.
+			String look;
+			int tries = 0;
+			do {
+				Thread.sleep(10);
+				first.send("look");
+				look = first.answer();
+			} while (look.contains("\nPlayers: ") && ++tries < 100);
+			assertFalse(look.contains("\nPlayers: "));
+		}
+	}
+
+	/**
+	 * Test that a server with a tick answers every command in order.
+	 */
+	@Test
+	public void testTicked() throws IOException {
+		server.close();
+		server = new GameServer(World.london(), 0, null, 5000000L);
+		server.start();
+		try (Client client = new Client()) {
+			assertTrue(client.answer().contains("Welcome to the World of London!"));
+			client.send("go west\ngo east\nlook");
+			assertTrue(client.answer().startsWith("You are in the British Library."));
+			assertTrue(client.answer().startsWith("You are in St Pancras."));
+			assertTrue(client.answer().startsWith("You are in St Pancras."));
+			client.send("quit");
+			assertTrue(client.answer().startsWith("Thank you for playing."));
+			assertEquals(-1, client.in.read());
+		}
+	}
+
+	/**
+	 * Test that a server with a tick takes no more than MAX_IN_FLIGHT
+	 * commands of a client into a tick, and answers the lines held back
+	 * in later ticks.
+	 */
+	@Test
+	public void testInFlight() throws IOException {
+		server.close();
+		server = new GameServer(World.london(), 0, null, 200000000L);
+		server.start();
+		int lines = 2 * GameServer.MAX_IN_FLIGHT + 20;
+		try (Client client = new Client()) {
+			client.answer();
+			StringBuilder burst = new StringBuilder();
+			for (int i = 0; i < lines; i++) {
+				burst.append("look\n");
+			}
+			client.out.write(burst.toString().getBytes(StandardCharsets.UTF_8));
+			client.out.flush();
+
+			assertTrue(client.answer().startsWith("You are in St Pancras."));
+			assertTrue(server.getCommands() <= GameServer.MAX_IN_FLIGHT);
+			for (int i = 1; i < lines; i++) {
+				assertTrue(client.answer().startsWith("You are in St Pancras."));
+			}
+			assertEquals(lines, server.getCommands());
+		}
+	}
+}
@@ -85,6 +85,37 @@ public class GameTest {
 		assertEquals(false, game.finished());
 	}
 
+	/**
+	 * Test that two games do not share character state.
+	 */
+	@Test
+	public void testGamesIndependent() {
+		Game other = new Game();
+
+		assertTrue(game.getCharacterState(Character.SALLY).take(Item.CRISPS));
+		assertTrue(other.getCharacterState(Character.SALLY).has(Item.CRISPS));
+
+		game.goRoom(Direction.WEST, false);
+		assertNotSame(game.getCharacterState(Character.PLAYER).getRoom(),
+				other.getCharacterState(Character.PLAYER).getRoom());
+		assertEquals("in St Pancras", other.getCharacterState(Character.PLAYER).getRoom().getShortDescription());
+	}
+
+	/**
+	 * Test that two games with the same seed play out the same.
+	 */
+	@Test
+	public void testSeedReproducible() {
+		Game first = new Game(World.london(), 42L);
+		Game second = new Game(World.london(), 42L);
+
+		for (int i = 0; i < 12; i++) {
+			assertEquals(first.goRoom(null, true), second.goRoom(null, true));
+		}
+		assertEquals(first.getOutcome(), second.getOutcome());
+		assertEquals(42L, first.getSeed());
+	}
+
 	@Test
 	public void testDescription() {
 		// test everything
@@ -0,0 +1,114 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * The test class InventoryTest.
+ */
+public class InventoryTest {
+
+	/**
+	 * Test that an item only moves to a character that lacks it, from one
+	 * that carries it.
+	 */
+	@Test
+	public void testTransfer() {
+		Inventory laura = new Inventory(Item.mask(Item.SANDWICH));
+		Inventory andy = new Inventory(Item.mask(Item.SANDWICH, Item.DRINK));
+		assertFalse(Inventory.transfer(laura, andy, Item.SANDWICH));
+		assertFalse(Inventory.transfer(laura, andy, Item.CRISPS));
+		assertTrue(Inventory.transfer(andy, laura, Item.DRINK));
+		assertEquals(Item.mask(Item.SANDWICH, Item.DRINK), laura.get());
+		assertEquals(Item.mask(Item.SANDWICH), andy.get());
+		assertFalse(laura.add(Item.DRINK));
+		assertTrue(laura.remove(Item.DRINK));
+		assertFalse(laura.remove(Item.DRINK));
+	}
+
+	/**
+	 * Test that a swap moves both items or neither.
+	 */
+	@Test
+	public void testSwap() {
+		Inventory sally = new Inventory(Item.mask(Item.CRISPS));
+		Inventory andy = new Inventory(Item.mask(Item.DRINK));
+		assertFalse(Inventory.swap(sally, Item.CRISPS, andy, Item.SANDWICH));
+		assertEquals(Item.mask(Item.CRISPS), sally.get());
+		assertEquals(Item.mask(Item.DRINK), andy.get());
+		assertTrue(Inventory.swap(sally, Item.CRISPS, andy, Item.DRINK));
+		assertEquals(Item.mask(Item.DRINK), sally.get());
+		assertEquals(Item.mask(Item.CRISPS), andy.get());
+	}
+
+	/**
+	 * Test that a closed inventory takes no more items but still gives
+	 * them, until its items are replaced.
+	 */
+	@Test
+	public void testClose() {
+		Inventory laura = new Inventory(Item.mask(Item.SANDWICH));
+		Inventory andy = new Inventory(Item.mask(Item.DRINK, Item.CRISPS));
+		andy.close();
+		assertTrue(andy.isClosed());
+		assertFalse(Inventory.transfer(laura, andy, Item.SANDWICH));
+		assertFalse(Inventory.swap(laura, Item.SANDWICH, andy, Item.DRINK));
+		assertFalse(andy.add(Item.SANDWICH));
+		assertEquals(Item.mask(Item.SANDWICH), laura.get());
+		assertEquals(Item.mask(Item.DRINK, Item.CRISPS), andy.get());
+		assertTrue(Inventory.transfer(andy, laura, Item.DRINK));
+		assertEquals(Item.mask(Item.CRISPS), andy.get());
+		andy.set(0);
+		assertFalse(andy.isClosed());
+		assertTrue(andy.add(Item.SANDWICH));
+	}
+
+	/**
+	 * Test that threads giving and swapping items between the same few
+	 * inventories at once neither duplicate nor lose any item.
+	 */
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		Inventory[] inventories = new Inventory[4];
+		for (int i = 0; i < inventories.length; i++) {
+			inventories[i] = new Inventory(i % 2 == 0 ? Item.mask(Item.SANDWICH, Item.CRISPS) : Item.mask(Item.DRINK));
+		}
+		Item[] items = Item.values();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread(() -> {
+				SplittableRandom random = new SplittableRandom(thread);
+				for (int i = 0; i < 200000; i++) {
+					Inventory a = inventories[random.nextInt(inventories.length)];
+					Inventory b = inventories[random.nextInt(inventories.length)];
+					Item given = items[random.nextInt(items.length)];
+					Item taken = items[random.nextInt(items.length)];
+					if (given == taken) {
+						Inventory.transfer(a, b, given);
+					} else {
+						Inventory.swap(a, given, b, taken);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		int[] counts = new int[items.length];
+		for (Inventory inventory : inventories) {
+			for (Item item : items) {
+				counts[item.ordinal()] += inventory.has(item) ? 1 : 0;
+			}
+			assertTrue(inventory.add(Item.SANDWICH) || inventory.has(Item.SANDWICH)); // no reservation left
+		}
+		assertEquals(2, counts[Item.SANDWICH.ordinal()]);
+		assertEquals(2, counts[Item.CRISPS.ordinal()]);
+		assertEquals(2, counts[Item.DRINK.ordinal()]);
+	}
+}
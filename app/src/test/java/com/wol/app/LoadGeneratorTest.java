@@ -0,0 +1,36 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * The test class LoadGeneratorTest.
+ */
+public class LoadGeneratorTest {
+
+	/**
+	 * Test that a throttled run issues about the target number of commands
+	 * and measures each of them.
+	 */
+	@Test
+	public void testThrottled() {
+		LoadGenerator.Report report = new LoadGenerator(World.london(), Bots.GOAL_SEEKER, 8, 2000, 0L).run(0.5);
+		assertTrue(report.getCommands() > 500);
+		assertTrue(report.getCommands() <= 1000 + 8);
+		assertEquals(report.getCommands(), report.getService().count());
+		assertTrue(report.getSessions() > 0);
+		assertEquals(report.getSessions(), report.getWins());
+		assertTrue(report.getLatency().percentile(0.5) >= report.getService().percentile(0.5) / 2);
+	}
+
+	/**
+	 * Test that an unthrottled run completes and reports its figures.
+	 */
+	@Test
+	public void testUnthrottled() {
+		LoadGenerator.Report report = new LoadGenerator(World.london(), Bots.RANDOM_WALKER, 4, 0, 1L).run(0.2);
+		assertTrue(report.getCommands() > 0);
+		assertTrue(report.toString().contains("unlimited"));
+	}
+}
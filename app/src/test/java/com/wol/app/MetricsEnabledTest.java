@@ -0,0 +1,79 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The test class MetricsEnabledTest. Maven runs it in a JVM of its own
+ * with metrics on, see app/pom.xml; elsewhere it is skipped.
+ */
+public class MetricsEnabledTest {
+
+	@Before
+	public void setUp() {
+		assumeTrue(Metrics.ENABLED);
+	}
+
+	/**
+	 * Test that counters, histograms and the probes of a game record
+	 * while metrics are on.
+	 */
+	@Test
+	public void testProbes() {
+		Metrics.Counter counter = new Metrics.Counter("test");
+		counter.increment();
+		counter.add(2);
+		assertEquals(3, counter.get());
+		Metrics.Histogram histogram = new Metrics.Histogram("test");
+		histogram.stop(Metrics.start());
+		assertEquals(1, histogram.count());
+
+		long started = Metrics.SESSIONS_STARTED.get();
+		long finished = Metrics.SESSIONS_FINISHED.get();
+		long moves = Metrics.GO_ROOM.count();
+		Game game = new Game(World.london(), 1);
+		game.goRoom(Direction.WEST, false);
+		game.quit();
+		assertEquals(started + 1, Metrics.SESSIONS_STARTED.get());
+		assertEquals(finished + 1, Metrics.SESSIONS_FINISHED.get());
+		assertEquals(moves + 1, Metrics.GO_ROOM.count());
+	}
+
+	/**
+	 * Test that the metrics are published through JMX, each attribute of
+	 * the type it is declared with.
+	 */
+	@Test
+	public void testBean() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+		MBeanAttributeInfo[] attributes = server.getMBeanInfo(name).getAttributes();
+		assertTrue(attributes.length > 0);
+		for (MBeanAttributeInfo attribute : attributes) {
+			assertEquals(attribute.getType(), server.getAttribute(name, attribute.getName()).getClass().getName());
+		}
+
+		long started = (Long) server.getAttribute(name, "sessions.started");
+		new Game(World.london(), 1).goRoom(Direction.WEST, false);
+		assertEquals(started + 1, server.getAttribute(name, "sessions.started"));
+		assertTrue((Long) server.getAttribute(name, "game.goRoom.count") > 0);
+		assertTrue(((String) server.getAttribute(name, "dump")).contains("game.goRoom"));
+		assertEquals(2, server.getAttributes(name, new String[] {"sessions.started", "game.goRoom.p99", "none"}).size());
+		try {
+			server.invoke(name, "reset", new Object[0], new String[0]);
+			fail("The metrics have no operations");
+		} catch (ReflectionException e) {
+			assertTrue(e.getCause() instanceof NoSuchMethodException);
+		}
+	}
+}
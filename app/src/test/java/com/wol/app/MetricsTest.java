@@ -0,0 +1,72 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * The test class MetricsTest.
+ */
+public class MetricsTest {
+
+	/**
+	 * Test that every value falls in a bucket whose largest value is at
+	 * least the value and at most 1/16 above it.
+	 */
+	@Test
+	public void testBuckets() {
+		SplittableRandom random = new SplittableRandom(3);
+		for (int i = 0; i < 100000; i++) {
+			long value = random.nextLong(Long.MAX_VALUE) >>> random.nextInt(63);
+			long highest = Metrics.Histogram.highest(Metrics.Histogram.bucket(value));
+			assertTrue(value <= highest);
+			assertTrue(highest - value <= value / 16);
+		}
+		for (long value = 0; value < 4096; value++) {
+			assertTrue(Metrics.Histogram.bucket(value) <= Metrics.Histogram.bucket(value + 1));
+		}
+		assertEquals(Metrics.Histogram.highest(Metrics.Histogram.bucket(Long.MAX_VALUE)), Long.MAX_VALUE);
+	}
+
+	/**
+	 * Test the percentiles, mean and maximum of a histogram.
+	 */
+	@Test
+	public void testPercentiles() {
+		Metrics.Histogram histogram = new Metrics.Histogram("test");
+		assertEquals(0, histogram.percentile(0.5));
+		for (long value = 1; value <= 1000; value++) {
+			histogram.add(value * 1000);
+		}
+		assertEquals(1000, histogram.count());
+		assertEquals(500500.0, histogram.mean(), 1e-9);
+		assertEquals(1000000, histogram.max());
+		assertEquals(500000, histogram.percentile(0.5), 500000 / 16);
+		assertEquals(990000, histogram.percentile(0.99), 990000 / 16);
+		assertEquals(1000000, histogram.percentile(1.0));
+	}
+
+	/**
+	 * Test that probes record nothing while metrics are off, and that the
+	 * dump names every metric.
+	 */
+	@Test
+	public void testProbes() {
+		Metrics.Counter counter = new Metrics.Counter("test");
+		counter.increment();
+		assertEquals(Metrics.ENABLED ? 1 : 0, counter.get());
+		counter.add(2);
+		assertEquals(Metrics.ENABLED ? 3 : 0, counter.get());
+
+		long started = Metrics.SESSIONS_STARTED.get();
+		new Game(World.london(), 1);
+		assertEquals(Metrics.ENABLED ? started + 1 : started, Metrics.SESSIONS_STARTED.get());
+
+		String dump = Metrics.dump();
+		assertTrue(dump.contains("sessions.started"));
+		assertTrue(dump.contains("game.moveCharacters"));
+		assertTrue(dump.contains("commands/s (mean)"));
+	}
+}
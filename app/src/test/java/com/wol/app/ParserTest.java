@@ -0,0 +1,81 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The test class ParserTest.
+ */
+public class ParserTest {
+	private Parser parser;
+	private Game game;
+	private GameMain ui;
+
+	/**
+	 * Sets up the test fixture.
+	 *
+	 * Called before every test case method.
+	 */
+	@Before
+	public void setUp() {
+		parser = new Parser(new ByteArrayInputStream(new byte[0]));
+		game = new Game(World.london(), 1L);
+		ui = new GameMain(game, parser);
+	}
+
+	/**
+	 * Known commands are recognised, whatever the spacing and the rest of the line.
+	 */
+	@Test
+	public void testCommands() {
+		assertTrue(parser.parse("look").process(ui, game).startsWith("You are in St Pancras."));
+		assertTrue(parser.parse("  look  around ").process(ui, game).startsWith("You are in St Pancras."));
+		assertEquals("Item not in this room.", parser.parse("take\tsandwich now").process(ui, game));
+		assertEquals("You cannot eat yet.", parser.parse("eat").process(ui, game));
+		assertEquals("You do not have this item.", parser.parse("give drink").process(ui, game));
+		assertEquals("Nobody here wants to trade.", parser.parse("trade").process(ui, game));
+		assertTrue(parser.parse("help").process(ui, game).endsWith(parser.commands()));
+		assertTrue(parser.parse("go west").process(ui, game).startsWith("You are in the British Library."));
+		assertEquals("Thank you for playing.  Good bye.", parser.parse("quit").process(ui, game));
+	}
+
+	/**
+	 * Unknown words and missing or wrong arguments are not understood.
+	 */
+	@Test
+	public void testUnknown() {
+		String unknown = "I do not understand this command.";
+		for (String line : new String[] { "", "   ", "dance", "go", "go up", "go sandwich", "take", "take north", "give",
+				"give west",
+				"north", "Look", "looks", "lo" }) {
+			assertEquals(line, unknown, parser.parse(line).process(ui, game));
+		}
+	}
+
+	/**
+	 * Every verb and argument pair gives the same command each time.
+	 */
+	@Test
+	public void testShared() {
+		assertSame(parser.parse("go north"), parser.parse(" go north please"));
+		assertSame(parser.parse("take drink"), parser.parse(CharBuffer.wrap("take drink")));
+		assertSame(parser.parse("dance"), parser.parse("go"));
+		assertNotSame(parser.parse("go north"), parser.parse("go south"));
+	}
+
+	/**
+	 * Lines are parsed straight from bytes.
+	 */
+	@Test
+	public void testBytes() {
+		ByteBuffer buffer = ByteBuffer.wrap("xxgo eastxx".getBytes(StandardCharsets.US_ASCII));
+		assertSame(parser.parse("go east"), parser.parse(buffer, 2, 9));
+	}
+}
@@ -0,0 +1,91 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * The test class RegionSimulationTest.
+ */
+public class RegionSimulationTest {
+
+	/**
+	 * Return a grid of rooms, each linked to its neighbors.
+	 */
+	private static World grid(int width, int height) {
+		World.Builder builder = new World.Builder();
+		for (int room = 0; room < width * height; room++) {
+			builder.addRoom("in square " + room);
+		}
+		for (int room = 0; room < width * height; room++) {
+			if (room >= width) {
+				builder.setExit(room, Direction.NORTH, room - width);
+				builder.setExit(room - width, Direction.SOUTH, room);
+			}
+			if (room % width > 0) {
+				builder.setExit(room, Direction.WEST, room - 1);
+				builder.setExit(room - 1, Direction.EAST, room);
+			}
+		}
+		return builder.place(Character.PLAYER, 0).setGoal(0).build();
+	}
+
+	/**
+	 * Test that every room belongs to one region and that regions are of
+	 * similar size.
+	 */
+	@Test
+	public void testPartition() {
+		World world = grid(40, 25);
+		Regions regions = Regions.partition(world, 8);
+		assertEquals(8, regions.count());
+		int total = 0;
+		for (int region = 0; region < regions.count(); region++) {
+			assertTrue(regions.size(region) > 1000 / 8 / 4);
+			total += regions.size(region);
+		}
+		assertEquals(1000, total);
+		for (int room = 0; room < world.size(); room++) {
+			assertTrue(0 <= regions.getRegion(room) && regions.getRegion(room) < 8);
+		}
+		assertEquals(0, Regions.partition(world, 1).boundary(world));
+		assertTrue(regions.boundary(world) > 0);
+	}
+
+	/**
+	 * Test that rooms without exits are partitioned too.
+	 */
+	@Test
+	public void testUnreachable() {
+		World.Builder builder = new World.Builder();
+		for (int room = 0; room < 5; room++) {
+			builder.addRoom("alone");
+		}
+		World world = builder.place(Character.PLAYER, 0).setGoal(0).build();
+		Regions regions = Regions.partition(world, 2);
+		assertEquals(5, regions.size(0) + regions.size(1));
+	}
+
+	/**
+	 * Test that walkers end up in the same rooms however the world is
+	 * partitioned, and that none are lost in handoffs.
+	 */
+	@Test
+	public void testSameAcrossRegions() {
+		World world = grid(30, 30);
+		RegionSimulation one  = new RegionSimulation(world, Regions.partition(world, 1), 5000, 3L);
+		RegionSimulation four = new RegionSimulation(world, Regions.partition(world, 4), 5000, 3L);
+		assertArrayEquals(one.occupancy(), four.occupancy());
+
+		RegionSimulation.Report report = one.run(50);
+		assertEquals(5000L * 50, report.getMoves());
+		assertEquals(0, report.getHandoffs());
+		report = four.run(30);
+		assertTrue(report.getHandoffs() > 0);
+		four.run(20);
+		assertArrayEquals(one.occupancy(), four.occupancy());
+		assertEquals(5000, Arrays.stream(four.occupancy()).sum());
+	}
+}
@@ -0,0 +1,85 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The test class ReplayerTest.
+ */
+public class ReplayerTest {
+	private Path file;
+
+	/**
+	 * Sets up the test fixture.
+	 *
+	 * Called before every test case method.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("game", ".log");
+	}
+
+	/**
+	 * Tears down the test fixture.
+	 *
+	 * Called after every test case method.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		Files.delete(file);
+	}
+
+	/**
+	 * A game read through a recording parser is replayed exactly.
+	 */
+	@Test
+	public void testReplay() throws IOException {
+		String input = "random\nlook\ntake crisps\nrandom now please\nrandom\n  go   west\nrandom\neat\n";
+		Game game = new Game(World.london(), 7L);
+		Parser parser = new Parser(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+		GameMain ui = new GameMain(game, parser);
+		StringBuilder played = new StringBuilder();
+		try (ReplayLog log = new ReplayLog(file, game.getSeed())) {
+			parser.setLog(log);
+			for (int i = 0; i < 8; i++) {
+				played.append(parser.getCommand().process(ui, game));
+			}
+		}
+
+		Replayer replayer = new Replayer(file, World.london());
+		StringBuilder replayed = new StringBuilder();
+		while (replayer.hasNext()) {
+			replayed.append(replayer.step());
+		}
+		assertEquals(played.toString(), replayed.toString());
+		assertEquals(8, replayer.getCommands());
+		assertEquals(game.getTime(), replayer.getGame().getTime());
+		assertEquals(game.look(), replayer.getGame().look());
+	}
+
+	/**
+	 * Fast-forwarding stops at the given tick.
+	 */
+	@Test
+	public void testFastForward() throws IOException {
+		try (ReplayLog log = new ReplayLog(file, 3L)) {
+			for (int i = 0; i < 10; i++) {
+				log.record("look");
+				log.record("go north");
+			}
+		}
+
+		Replayer replayer = new Replayer(file, World.london());
+		assertEquals(4, replayer.fastForward(4).getTime());
+		assertEquals(8, replayer.getCommands());
+	}
+}
@@ -46,6 +46,17 @@ public class RoomTest {
 		assertEquals(room, room.getExit(Direction.NORTH));
 		assertEquals(room, room.getExit(Direction.WEST));
 		assertEquals(null, room.getExit(Direction.EAST));
+		assertSame(room.getExit(Direction.NORTH), room.getExit(Direction.WEST));
+	}
+
+	/**
+	 * Test that the exits of a game's rooms, whose world other games
+	 * share, are not changed.
+	 */
+	@Test(expected = AssertionError.class)
+	public void checkSharedExits() {
+		Room street = new Game(World.london(), 1L).getCharacterState(Character.PLAYER).getRoom();
+		street.setExit(Direction.NORTH, street);
 	}
 
 	/**
@@ -56,4 +67,55 @@ public class RoomTest {
 		assertEquals("library", room.getShortDescription());
 		assertEquals("You are library.\nExits:", room.getLongDescription());
 	}
+
+	/**
+	 * Test that characters enter and leave the room and that items are taken
+	 * from them.
+	 */
+	@Test
+	public void checkCharacters() {
+		CharacterState andy = new CharacterState(Character.ANDY);
+		room.addCharacter(andy);
+		assertTrue(room.hasCharacter(Character.ANDY));
+		assertFalse(room.hasCharacter(Character.SALLY));
+		assertEquals("You are library.\nExits:\nCharacters: Andy having the item[s]: drink; ", room.getLongDescription());
+
+		CharacterState player = new CharacterState(Character.PLAYER, 0);
+		room.addCharacter(player);
+		assertFalse(room.take(Item.CRISPS, player));
+		assertTrue(room.take(Item.DRINK, player));
+		assertFalse(andy.has(Item.DRINK));
+		assertTrue(player.has(Item.DRINK));
+		assertFalse(room.take(Item.DRINK, player));
+
+		room.removeCharacter(player);
+		room.removeCharacter(andy);
+		assertFalse(room.hasCharacter(Character.ANDY));
+		assertEquals("You are library.\nExits:", room.getLongDescription());
+	}
+
+	/**
+	 * Test that the long description is rendered once and again after
+	 * exits, characters or their items change.
+	 */
+	@Test
+	public void checkCachedDescription() {
+		String description = room.getLongDescription();
+		assertSame(description, room.getLongDescription());
+
+		room.setExit(Direction.NORTH, room);
+		assertEquals("You are library.\nExits: north", room.getLongDescription());
+
+		CharacterState andy = new CharacterState(Character.ANDY);
+		room.addCharacter(andy);
+		assertEquals("You are library.\nExits: north\nCharacters: Andy having the item[s]: drink; ", room.getLongDescription());
+		andy.receive(Item.CRISPS);
+		assertEquals("You are library.\nExits: north\nCharacters: Andy having the item[s]: crisps, drink; ", room.getLongDescription());
+		description = room.getLongDescription();
+		assertFalse(andy.receive(Item.CRISPS));
+		assertSame(description, room.getLongDescription());
+
+		room.removeCharacter(andy);
+		assertEquals("You are library.\nExits: north", room.getLongDescription());
+	}
 }
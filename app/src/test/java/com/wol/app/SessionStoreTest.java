@@ -0,0 +1,153 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The test class SessionStoreTest.
+ */
+public class SessionStoreTest {
+	private Path file;
+	private Parser parser;
+
+	/**
+	 * Sets up the test fixture.
+	 *
+	 * Called before every test case method.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("games", ".store");
+		Files.delete(file);
+		parser = new Parser(new ByteArrayInputStream(new byte[0]));
+	}
+
+	/**
+	 * Tears down the test fixture.
+	 *
+	 * Called after every test case method.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Play the given lines and return the last answer.
+	 */
+	private String play(GameMain ui, Game game, String... lines) {
+		String answer = null;
+		for (String line : lines) {
+			answer = parser.parse(line).process(ui, game);
+		}
+		return answer;
+	}
+
+	/**
+	 * A loaded game goes on as the saved game did.
+	 */
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		try (SessionStore store = new SessionStore(file, World.london(), 4)) {
+			Game game = new Game(World.london(), 21L);
+			GameMain ui = new GameMain(game, parser);
+			ui.setStore(store, 1);
+			play(ui, game, "random", "take crisps", "random");
+			assertEquals("Game saved in slot 1.", play(ui, game, "save"));
+			String later = play(ui, game, "random", "random", "look");
+			int time = game.getTime();
+
+			Game other = new Game(World.london(), 99L);
+			GameMain otherUi = new GameMain(other, parser);
+			otherUi.setStore(store, 0);
+			assertEquals("No game is saved in slot 0.", play(otherUi, other, "load"));
+			assertTrue(play(otherUi, other, "load 1").startsWith("Game loaded from slot 1.\n"));
+			assertEquals(21L, other.getSeed());
+			assertEquals(later, play(otherUi, other, "random", "random", "look"));
+			assertEquals(time, other.getTime());
+		}
+	}
+
+	/**
+	 * Saved games are kept when the store is opened again.
+	 */
+	@Test
+	public void testReopen() throws IOException {
+		Game game = new Game(World.london(), 5L);
+		GameMain ui = new GameMain(game, parser);
+		try (SessionStore store = new SessionStore(file, World.london(), 8)) {
+			ui.setStore(store, 0);
+			play(ui, game, "random", "random", "save 7");
+			assertTrue(store.isSaved(7));
+			assertFalse(store.isSaved(0));
+		}
+		try (SessionStore store = new SessionStore(file, World.london(), 2)) {
+			assertEquals(8, store.slots());
+			Game loaded = new Game(World.london(), 6L);
+			assertTrue(store.load(7, loaded));
+			assertEquals(game.look(), loaded.look());
+			assertEquals(game.getTime(), loaded.getTime());
+		}
+	}
+
+	/**
+	 * Games saved under names in a shared store are loaded by their names
+	 * only, also once the store is opened again.
+	 */
+	@Test
+	public void testNames() throws IOException {
+		Game game = new Game(World.london(), 5L);
+		GameMain ui = new GameMain(game, parser);
+		try (SessionStore store = new SessionStore(file, World.london(), 2)) {
+			ui.setSharedStore(store);
+			assertEquals("Save your game under a name, e.g. 'save <name>'.", play(ui, game, "save"));
+			assertEquals("Game saved as 3.", play(ui, game, "random", "save 3"));
+			assertEquals("Game saved as alice.", play(ui, game, "random", "save alice"));
+			assertEquals("There is no room left to save games.", play(ui, game, "save bob"));
+			assertEquals("No game is saved as bob.", play(ui, game, "load bob"));
+		}
+		try (SessionStore store = new SessionStore(file, World.london(), 2)) {
+			Game other = new Game(World.london(), 6L);
+			GameMain otherUi = new GameMain(other, parser);
+			otherUi.setSharedStore(store);
+			assertTrue(play(otherUi, other, "load alice").startsWith("Game loaded as alice.\n"));
+			assertEquals(game.look(), other.look());
+			assertEquals(game.getTime(), other.getTime());
+			assertEquals("Game saved as alice.", play(otherUi, other, "random", "save"));
+			assertEquals(store.slot(SessionStore.key("alice"), false), store.slot(SessionStore.key("alice"), true));
+		}
+	}
+
+	/**
+	 * Games cannot be saved without a store or outside its slots.
+	 */
+	@Test
+	public void testNowhere() throws IOException {
+		Game game = new Game(World.london(), 5L);
+		GameMain ui = new GameMain(game, parser);
+		assertEquals("There is nowhere to save games.", play(ui, game, "save"));
+		try (SessionStore store = new SessionStore(file, World.london(), 2)) {
+			ui.setStore(store, 0);
+			assertEquals("There is no slot 2.", play(ui, game, "save 2"));
+			assertEquals("Game saved in slot 0.", play(ui, game, "save slot"));
+		}
+	}
+
+	/**
+	 * A store is not opened for another world.
+	 */
+	@Test(expected = IOException.class)
+	public void testOtherWorld() throws IOException {
+		try (SessionStore store = new SessionStore(file, World.london(), 2)) {
+		}
+		new SessionStore(file, World.single("nowhere"), 2);
+	}
+}
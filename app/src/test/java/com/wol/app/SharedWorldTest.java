@@ -0,0 +1,192 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * The test class SharedWorldTest.
+ */
+public class SharedWorldTest {
+	private static final int MEAL = Item.mask(Item.SANDWICH, Item.DRINK, Item.CRISPS);
+
+	/**
+	 * Return a world of a square, where players start carrying the given
+	 * items and no other character is, and a yard next to it. The goal
+	 * cannot be reached.
+	 */
+	private static World square(int items) {
+		World.Builder builder = new World.Builder();
+		int square = builder.addRoom("in the square");
+		int yard   = builder.addRoom("in the yard");
+		int goal   = builder.addRoom("nowhere");
+		builder.setExit(square, Direction.EAST, yard).setExit(yard, Direction.WEST, square).setGoal(goal);
+		builder.place(Character.PLAYER, square).setItems(Character.PLAYER, items);
+		return builder.build();
+	}
+
+	/**
+	 * Players see each other in their room and leave the world when
+	 * their games finish.
+	 */
+	@Test
+	public void testPlayers() {
+		SharedWorld world = new SharedWorld(World.london());
+		Game ann = world.join("Ann", new Game(World.london(), 1L)).getGame();
+		SharedWorld.Player bob = world.join("Bob", new Game(World.london(), 2L));
+		int start = bob.getRoom();
+		assertEquals(2, world.players(start));
+		assertTrue(ann.look().startsWith("You are in St Pancras."));
+		assertTrue(ann.look().endsWith("\nPlayers: Bob"));
+
+		assertTrue(bob.getGame().goRoom(Direction.WEST, false).startsWith("You are in the British Library."));
+		assertEquals(1, world.players(start));
+		assertEquals(1, world.players(bob.getRoom()));
+		assertFalse(ann.look().contains("Bob"));
+
+		bob.getGame().quit();
+		assertEquals(World.NO_ROOM, bob.getRoom());
+		assertEquals(0, world.players(1));
+		assertFalse(ann.finished());
+	}
+
+	/**
+	 * Players give and trade items with other players in their room.
+	 */
+	@Test
+	public void testGive() {
+		SharedWorld world = new SharedWorld(square(MEAL), 1);
+		Game ann = world.join("Ann", new Game(world.getWorld(), 1L)).getGame();
+		Game bob = world.join("Bob", new Game(world.getWorld(), 2L)).getGame();
+		bob.getCharacterState(Character.PLAYER).setItems(0);
+
+		assertEquals("Item given.", ann.give(Item.DRINK));
+		assertEquals(Item.mask(Item.DRINK), bob.getCharacterState(Character.PLAYER).getItems());
+		assertTrue(bob.look().contains("The player (Me) having the item[s]: drink"));
+		assertEquals("You do not have this item.", bob.give(Item.CRISPS));
+		assertEquals("You traded your drink for sandwich.", bob.trade());
+		assertEquals(Item.mask(Item.SANDWICH), bob.getCharacterState(Character.PLAYER).getItems());
+		assertEquals(Item.mask(Item.DRINK, Item.CRISPS), ann.getCharacterState(Character.PLAYER).getItems());
+
+		ann.goRoom(Direction.EAST, false);
+		assertEquals("Nobody here can take this item.", ann.give(Item.DRINK));
+		assertEquals("Nobody here wants to trade.", ann.trade());
+		assertEquals("Nobody here wants to trade.", bob.trade());
+	}
+
+	/**
+	 * A player whose game finished takes no more items, so none is lost
+	 * with it, and takes them again once its game is loaded.
+	 */
+	@Test
+	public void testQuit() {
+		SharedWorld world = new SharedWorld(square(MEAL), 1);
+		Game ann = world.join("Ann", new Game(world.getWorld(), 1L)).getGame();
+		Game bob = world.join("Bob", new Game(world.getWorld(), 2L)).getGame();
+		bob.getCharacterState(Character.PLAYER).setItems(0);
+		ByteBuffer saved = ByteBuffer.allocate(Game.STATE_BYTES);
+		bob.save(saved);
+		saved.flip();
+
+		CharacterState player = bob.getCharacterState(Character.PLAYER);
+		bob.quit();
+		assertFalse(player.pass(ann.getCharacterState(Character.PLAYER), Item.DRINK));
+		assertFalse(ann.getCharacterState(Character.PLAYER).pass(player, Item.DRINK));
+		assertEquals(0, player.getItems());
+		assertEquals("Nobody here can take this item.", ann.give(Item.DRINK));
+
+		bob.load(saved);
+		assertEquals("Item given.", ann.give(Item.DRINK));
+		assertEquals(Item.mask(Item.DRINK), player.getItems());
+	}
+
+	/**
+	 * Players moving about the rooms on many threads are each counted in
+	 * the room their game is in, and players giving and trading items at
+	 * once neither duplicate nor lose them, not even to players quitting
+	 * meanwhile.
+	 */
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		SharedWorld world = new SharedWorld(World.london(), 2);
+		SharedWorld square = new SharedWorld(square(MEAL), 4);
+		int threads = 8;
+		List<List<SharedWorld.Player>> joined = new ArrayList<>();
+		int[][] atQuit = new int[threads][50]; // the items of each trader when it quit
+		Thread[] running = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			List<SharedWorld.Player> mine = new ArrayList<>();
+			joined.add(mine);
+			final int thread = t;
+			running[t] = new Thread(() -> {
+				SplittableRandom random = new SplittableRandom(thread);
+				for (int round = 0; round < 50; round++) {
+					Game game = world.join("Player " + thread + "." + round, new Game(World.london(), random.nextLong())).getGame();
+					while (!game.finished()) {
+						game.goRoom(null, true);
+					}
+					mine.add(world.join("Walker " + thread + "." + round, new Game(World.london(), random.nextLong())));
+					mine.get(mine.size() - 1).getGame().goRoom(null, true);
+				}
+				for (int round = 0; round < 50; round++) {
+					SharedWorld.Player player = square.join("Trader " + thread + "." + round, new Game(square.getWorld(), thread));
+					mine.add(player);
+					for (int i = 0; i < 200; i++) {
+						switch (random.nextInt(3)) {
+							case 0: player.getGame().give(Item.values()[random.nextInt(3)]); break;
+							case 1: player.getGame().trade();                                break;
+							default: player.getGame().look();
+						}
+					}
+					if (random.nextBoolean()) {
+						player.getGame().quit();
+						atQuit[thread][round] = player.getGame().getCharacterState(Character.PLAYER).getItems();
+					}
+				}
+			});
+			running[t].start();
+		}
+		for (Thread thread : running) {
+			thread.join();
+		}
+
+		int[] rooms = new int[World.london().size()];
+		int[] counts = new int[Item.values().length];
+		int traders = 0;
+		int playing = 0;
+		for (int thread = 0; thread < threads; thread++) {
+			int round = 0;
+			for (SharedWorld.Player player : joined.get(thread)) {
+				if (player.getGame().getWorld() == square.getWorld()) {
+					int items = player.getGame().getCharacterState(Character.PLAYER).getItems();
+					if (player.getGame().finished()) {
+						// Items reaching a player after it quit would be lost.
+						assertEquals(atQuit[thread][round], items);
+					} else {
+						playing++;
+					}
+					for (Item item : Item.values()) {
+						counts[item.ordinal()] += items & item.bit();
+					}
+					traders++;
+					round++;
+				} else if (!player.getGame().finished()) {
+					assertEquals(player.getGame().getCharacterState(Character.PLAYER).getRoom().getId(), player.getRoom());
+					rooms[player.getRoom()]++;
+				}
+			}
+		}
+		for (int room = 0; room < rooms.length; room++) {
+			assertEquals(rooms[room], world.players(room));
+		}
+		for (Item item : Item.values()) {
+			assertEquals(traders * (MEAL & item.bit()), counts[item.ordinal()]);
+		}
+		assertEquals(playing, square.players(0));
+	}
+}
@@ -0,0 +1,51 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * The test class SimulationTest.
+ */
+public class SimulationTest {
+
+	/**
+	 * Every session following the route to Trafalgar Square reaches the goal.
+	 */
+	@Test
+	public void testScriptedGoal() {
+		Simulation simulation = new Simulation(Simulation.scripted("go west", "go south", "go west", "go south",
+				"go south", "go south", "go south"), 20, 0L);
+		Simulation.Report report = simulation.run(1000);
+
+		assertEquals(1000, report.getSessions());
+		assertEquals(1000, report.getCount(Outcome.GOAL));
+	}
+
+	/**
+	 * Sessions whose script ends early are reported as unfinished.
+	 */
+	@Test
+	public void testScriptExhausted() {
+		Simulation simulation = new Simulation(Simulation.scripted("look", "take drink"), 20, 0L);
+		Simulation.Report report = simulation.run(100);
+
+		assertEquals(100, report.getCount(Outcome.PLAYING));
+	}
+
+	/**
+	 * Random sessions all end with some outcome and are all counted.
+	 */
+	@Test
+	public void testRandomSessions() {
+		Simulation simulation = new Simulation(Simulation.randomScript(), 100, 42L);
+		Simulation.Report report = simulation.run(1000);
+
+		long total = 0;
+		for (Outcome outcome : Outcome.values()) {
+			total += report.getCount(outcome);
+		}
+		assertEquals(1000, total);
+		assertEquals(0, report.getCount(Outcome.QUIT));
+	}
+}
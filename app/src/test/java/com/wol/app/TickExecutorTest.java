@@ -0,0 +1,167 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * The test class TickExecutorTest.
+ */
+public class TickExecutorTest {
+	private final Parser parser = new Parser(new ByteArrayInputStream(new byte[0]));
+
+	/**
+	 * Test that a tick executes the commands of a game up to the first one
+	 * that moves the characters, and leaves the rest for the next ticks.
+	 */
+	@Test
+	public void testOneMovePerTick() {
+		TickExecutor executor = new TickExecutor(1, 1000000L, null);
+		Game game = new Game(World.london(), 0L);
+		List<String> answers = new ArrayList<>();
+		TickExecutor.Player player = executor.join(game, new GameMain(game, parser),
+			(message, finished) -> answers.add(message));
+		player.submit(Commands.look());
+		player.submit(Commands.go(Direction.WEST));
+		player.submit(Commands.go(Direction.EAST));
+		player.submit(Commands.look());
+
+		executor.tick();
+		assertEquals(2, answers.size());
+		assertEquals(1, game.getTime());
+		assertTrue(answers.get(1).startsWith("You are in the British Library."));
+
+		executor.tick();
+		assertEquals(3, answers.size());
+		assertEquals(2, game.getTime());
+
+		executor.tick();
+		assertEquals(4, answers.size());
+		assertEquals(2, game.getTime());
+		assertTrue(answers.get(3).startsWith("You are in St Pancras."));
+
+		executor.tick();
+		assertEquals(4, executor.getCommands());
+		assertEquals(3, executor.getTickTimes().count());
+	}
+
+	/**
+	 * Test that commands for a finished game are dropped.
+	 */
+	@Test
+	public void testFinished() {
+		TickExecutor executor = new TickExecutor(1, 1000000L, null);
+		Game game = new Game(World.london(), 0L);
+		List<Boolean> finished = new ArrayList<>();
+		TickExecutor.Player player = executor.join(game, new GameMain(game, parser),
+			(message, over) -> finished.add(over));
+		player.submit(Commands.quit());
+		player.submit(Commands.look());
+
+		executor.tick();
+		assertEquals(1, finished.size());
+		assertTrue(finished.get(0));
+		assertEquals(1, executor.getCommands());
+	}
+
+	/**
+	 * Test that games spread over several shards all advance once per tick
+	 * and that the listener runs at the end of the tick.
+	 */
+	@Test
+	public void testShards() throws InterruptedException {
+		int players = 100;
+		CountDownLatch ticks = new CountDownLatch(3);
+		TickExecutor executor = new TickExecutor(4, 2000000L, ticks::countDown);
+		Game[] games = new Game[players];
+		for (int i = 0; i < players; i++) {
+			games[i] = new Game(World.london(), i);
+			TickExecutor.Player player = executor.join(games[i], new GameMain(games[i], parser),
+				(message, over) -> { });
+			for (int j = 0; j < 3; j++) {
+				player.submit(Commands.random());
+			}
+		}
+		executor.start();
+		try {
+			assertTrue(ticks.await(5, TimeUnit.SECONDS));
+		} finally {
+			executor.close();
+		}
+		for (Game game : games) {
+			assertEquals(3, game.getTime());
+		}
+		assertEquals(3 * players, executor.getCommands());
+	}
+
+	/**
+	 * Return the state of a game as written by Game.save().
+	 */
+	private static ByteBuffer state(Game game) {
+		ByteBuffer state = ByteBuffer.allocate(Game.STATE_BYTES);
+		game.save(state);
+		state.flip();
+		return state;
+	}
+
+	/**
+	 * Test that games of two shards saving to and loading from the same
+	 * slot in the same tick only ever load a state some game saved whole.
+	 */
+	@Test
+	public void testSharedSlot() throws IOException {
+		Path file = Files.createTempFile("games", ".store");
+		Files.delete(file);
+		Set<ByteBuffer> saved = Collections.synchronizedSet(new HashSet<>());
+		Set<ByteBuffer> loaded = Collections.synchronizedSet(new HashSet<>());
+		Command save = (GameMain ui, Game game) -> {
+			String answer = ui.save(game, 0);
+			saved.add(state(game));
+			return answer;
+		};
+		Command load = (GameMain ui, Game game) -> {
+			String answer = ui.load(game, 0);
+			if (answer.startsWith("Game loaded")) {
+				loaded.add(state(game));
+			}
+			return answer;
+		};
+		int commands = 20000;
+		try (SessionStore store = new SessionStore(file, World.london(), 1)) {
+			TickExecutor executor = new TickExecutor(2, 1000000L, null);
+			List<String> broken = Collections.synchronizedList(new ArrayList<>());
+			for (int i = 0; i < 8; i++) {
+				Game game = new Game(World.london(), i);
+				GameMain ui = new GameMain(game, parser);
+				ui.setStore(store, 0);
+				TickExecutor.Player player = executor.join(game, ui, (message, over) -> {
+					if (message.contains("cannot be loaded")) {
+						broken.add(message);
+					}
+				});
+				for (int command = 0; command < commands; command++) {
+					player.submit(i / 2 % 2 == 0 ? save : load);
+				}
+			}
+			executor.tick();
+			assertEquals(Collections.emptyList(), broken);
+			assertFalse(loaded.isEmpty());
+			assertTrue(saved.containsAll(loaded));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * The test class TickSchedulerTest.
+ */
+public class TickSchedulerTest {
+
+	/**
+	 * Return a board with the characters of a world in their starting rooms.
+	 */
+	private static Board board(World world) {
+		Board board = new Board(world, new SplittableRandom());
+		for (Character c : Character.values()) {
+			int room = world.getPlacement(c);
+			if (room != World.NO_ROOM) {
+				board.room(room).addCharacter(new CharacterState(c, world.getItems(c)));
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Test that boards ticked with the same seeds end up the same, however
+	 * the random numbers of the boards themselves were drawn.
+	 */
+	@Test
+	public void testReproducible() {
+		Board left  = board(World.london());
+		Board right = board(World.london());
+		TickScheduler first  = new TickScheduler(left);
+		TickScheduler second = new TickScheduler(right);
+		SplittableRandom seeds = new SplittableRandom(7);
+		for (int tick = 0; tick < 100; tick++) {
+			long seed = seeds.nextLong();
+			first.tick(seed);
+			second.tick(seed);
+			for (Character c : Character.values()) {
+				CharacterState one = left.getCharacters()[c.ordinal()];
+				CharacterState two = right.getCharacters()[c.ordinal()];
+				assertEquals(one.getRoom().getId(), two.getRoom().getId());
+				assertEquals(one.getItems(), two.getItems());
+			}
+		}
+	}
+
+	/**
+	 * Test that the player never moves and that characters move at their
+	 * own rate.
+	 */
+	@Test
+	public void testMoves() {
+		Board board = board(World.london());
+		TickScheduler scheduler = new TickScheduler(board);
+		CharacterState player  = board.getCharacters()[Character.PLAYER.ordinal()];
+		CharacterState monster = board.getCharacters()[Character.COOKIE_MONSTER.ordinal()];
+		int start = player.getRoom().getId();
+		SplittableRandom seeds = new SplittableRandom(11);
+		for (int tick = 0; tick < 100; tick++) {
+			int before = monster.getRoom().getId();
+			scheduler.tick(seeds.nextLong());
+			assertEquals(start, player.getRoom().getId());
+			assertNotEquals(before, monster.getRoom().getId());
+		}
+	}
+
+	/**
+	 * Test that acts in the same room apply in character order: the
+	 * CookieMonster takes before the CrispGiver gives.
+	 */
+	@Test
+	public void testActOrder() {
+		World.Builder builder = new World.Builder();
+		int hall  = builder.addRoom("in the hall");
+		int porch = builder.addRoom("on the porch");
+		builder.setExit(hall, Direction.NORTH, porch).setExit(porch, Direction.SOUTH, hall)
+			.place(Character.COOKIE_MONSTER, hall).place(Character.CRISP_GIVER, hall)
+			.place(Character.PLAYER, porch).setItems(Character.PLAYER, 0).setGoal(porch);
+		World world = builder.build();
+		for (long seed = 0; seed < 20; seed++) {
+			Board board = board(world);
+			new TickScheduler(board).tick(seed);
+			CharacterState player  = board.getCharacters()[Character.PLAYER.ordinal()];
+			CharacterState monster = board.getCharacters()[Character.COOKIE_MONSTER.ordinal()];
+			assertEquals(porch, monster.getRoom().getId());
+			assertTrue(player.has(Item.CRISPS));
+			assertTrue(monster.has(Item.CRISPS));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * The test class WinEstimatorTest.
+ */
+public class WinEstimatorTest {
+
+	/**
+	 * Test that a bot that always wins stops after one round.
+	 */
+	@Test
+	public void testEarlyStop() {
+		WinEstimator.Estimate estimate = new WinEstimator(World.london(), Bots.GOAL_SEEKER, 100, 0L)
+			.estimate(10 * WinEstimator.ROUND, 0.01);
+		assertEquals(WinEstimator.ROUND, estimate.getTrials());
+		assertEquals(1.0, estimate.getRate(Outcome.GOAL), 0.0);
+		assertTrue(estimate.within(0.01));
+	}
+
+	/**
+	 * Test that the estimate only depends on the seed, that it stops at the
+	 * trial limit and that the intervals hold their rates.
+	 */
+	@Test
+	public void testReproducible() {
+		WinEstimator estimator = new WinEstimator(World.london(), Bots.RANDOM_WALKER, 100, 5L);
+		ForkJoinPool single = new ForkJoinPool(1);
+		ForkJoinPool four = new ForkJoinPool(4);
+		WinEstimator.Estimate one;
+		WinEstimator.Estimate two;
+		try {
+			one = estimator.estimate(5000, 1e-6, single);
+			two = estimator.estimate(5000, 1e-6, four);
+		} finally {
+			single.shutdown();
+			four.shutdown();
+		}
+		assertEquals(5000, one.getTrials());
+		assertFalse(one.within(1e-6));
+		for (Outcome outcome : Outcome.values()) {
+			assertEquals(one.getCount(outcome), two.getCount(outcome));
+			assertTrue(one.getLower(outcome) <= one.getRate(outcome));
+			assertTrue(one.getRate(outcome) <= one.getUpper(outcome));
+		}
+		assertTrue(one.getRate(Outcome.GOAL) > 0);
+		assertTrue(one.getRate(Outcome.TIMEOUT) > 0);
+	}
+}
@@ -0,0 +1,85 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+/**
+ * The test class WorldGeneratorTest.
+ */
+public class WorldGeneratorTest {
+
+	/**
+	 * Test that grids and trees have two-way exits, and that from every room
+	 * of every shape the goal and the start can be reached.
+	 */
+	@Test
+	public void testConnected() {
+		for (WorldGenerator.Shape shape : WorldGenerator.Shape.values()) {
+			for (int rooms : new int[] {1, 10, 1000, 5000}) {
+				World world = new WorldGenerator(shape, rooms, 3L).generate();
+				assertEquals(rooms, world.size());
+				int[] fromStart = world.distances().distancesTo(0);
+				for (int room = 0; room < rooms; room++) {
+					assertTrue(world.distances().toGoal(room) < DistanceOracle.UNREACHABLE);
+					assertTrue(fromStart[room] < DistanceOracle.UNREACHABLE);
+					assertNotNull(world.getDescription(room));
+					for (Direction direction : Direction.values()) {
+						int exit = world.getExit(room, direction);
+						if (exit != World.NO_ROOM && shape != WorldGenerator.Shape.CITY) {
+							Direction back = Direction.values()[(direction.ordinal() + 2) % 4];
+							assertEquals(room, world.getExit(exit, back));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test that a world only depends on its seed.
+	 */
+	@Test
+	public void testReproducible() {
+		World one = new WorldGenerator(WorldGenerator.Shape.CITY, 20000, 9L).generate();
+		World two = new WorldGenerator(WorldGenerator.Shape.CITY, 20000, 9L).generate();
+		for (int room = 0; room < one.size(); room++) {
+			for (Direction direction : Direction.values()) {
+				assertEquals(one.getExit(room, direction), two.getExit(room, direction));
+			}
+			assertEquals(one.getDescription(room), two.getDescription(room));
+		}
+		for (Character c : Character.values()) {
+			assertEquals(one.getPlacement(c), two.getPlacement(c));
+			assertEquals(one.getItems(c), two.getItems(c));
+		}
+	}
+
+	/**
+	 * Test that a full density places the characters next to the player,
+	 * that the item share gives out items and that games can be played.
+	 */
+	@Test
+	public void testPlacement() {
+		World world = new WorldGenerator(WorldGenerator.Shape.GRID, 10000, 1L)
+			.setNpcDensity(1.0).setItemShare(1.0).generate();
+		assertEquals(0, world.getPlacement(Character.PLAYER));
+		assertEquals(0, world.getItems(Character.PLAYER));
+		for (Character c : Character.values()) {
+			assertTrue(world.distances().distancesTo(0)[world.getPlacement(c)] <= 2);
+			if (c != Character.PLAYER) {
+				assertEquals(Item.mask(Item.SANDWICH, Item.DRINK, Item.CRISPS), world.getItems(c));
+			}
+		}
+		World small = new WorldGenerator(WorldGenerator.Shape.TREE, 10, 1L).generate();
+		assertEquals(Item.mask(Item.SANDWICH), small.getItems(Character.LAURA));
+		Game game = new Game(small, 0L);
+		GameMain ui = new GameMain(game, new Parser(new ByteArrayInputStream(new byte[0])));
+		for (int i = 0; i < 20 && !game.finished(); i++) {
+			Bots.GOAL_SEEKER.next(game, null).execute(ui, game);
+		}
+		assertEquals(Outcome.GOAL, game.getOutcome());
+	}
+}
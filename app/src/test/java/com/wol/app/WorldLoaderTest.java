@@ -0,0 +1,110 @@
+package com.wol.app;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * The test class WorldLoaderTest.
+ */
+public class WorldLoaderTest {
+
+	/**
+	 * The London map has its ten rooms, with the player in St Pancras.
+	 */
+	@Test
+	public void testLondon() {
+		World london = World.london();
+
+		assertEquals(10, london.size());
+		assertEquals("on Trafalgar Square", london.getDescription(london.getGoal()));
+		assertEquals("in St Pancras", london.getDescription(london.getPlacement(Character.PLAYER)));
+		assertEquals(Item.DRINK.bit(), london.getItems(Character.ANDY));
+	}
+
+	/**
+	 * Exits, placements and items are read from a map file.
+	 */
+	@Test
+	public void testRead() throws IOException {
+		World world = WorldLoader.read(new StringReader(
+				"# two rooms\n" + "room 1 - - - in the hall\n" + "\n" + "room - - 0 - in the attic\n"
+						+ "character PLAYER 0 -\n" + "character ALEX 1 crisps drink\n" + "goal 1\n"));
+
+		assertEquals(2, world.size());
+		assertEquals("in the attic", world.getDescription(1));
+		assertEquals(1, world.getExit(0, Direction.NORTH));
+		assertEquals(World.NO_ROOM, world.getExit(0, Direction.SOUTH));
+		assertEquals(0, world.getItems(Character.PLAYER));
+		assertEquals(Item.mask(Item.CRISPS, Item.DRINK), world.getItems(Character.ALEX));
+		assertEquals(World.NO_ROOM, world.getPlacement(Character.SALLY));
+		assertEquals(1, world.getGoal());
+	}
+
+	/**
+	 * Rooms sharing a description share its text.
+	 */
+	@Test
+	public void testInterned() throws IOException {
+		World world = WorldLoader.read(new StringReader("room - - - 1 in a street\n" + "room - 0 - 2 in a street\n"
+				+ "room - 1 - - in a park\n" + "character PLAYER 0\n" + "goal 2\n"));
+
+		assertEquals(3, world.size());
+		assertEquals(2, world.distinctDescriptions());
+		assertSame(world.getDescription(0), world.getDescription(1));
+		assertEquals("in a park", world.getDescription(2));
+	}
+
+	/**
+	 * Malformed maps are reported.
+	 */
+	@Test
+	public void testMalformed() {
+		String[] maps = { "room 1 - - - in the hall\ncharacter PLAYER 0\ngoal 0\n",
+				"room - - - - in the hall\ncharacter NOBODY 0\ngoal 0\n", "room - - - - in the hall\ngoal 0\n",
+				"room x - - - in the hall\n", "door\n" };
+		for (String map : maps) {
+			try {
+				WorldLoader.read(new StringReader(map));
+				fail("Read malformed map: " + map);
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * A snapshot holds the same world as the map it was written from.
+	 */
+	@Test
+	public void testSnapshot() throws IOException {
+		Path file = Files.createTempFile("london", ".wol");
+		try {
+			World london = World.london();
+			WorldLoader.writeSnapshot(london, file);
+			assertTrue(WorldLoader.isSnapshot(file));
+
+			World mapped = WorldLoader.load(file);
+			assertEquals(london.size(), mapped.size());
+			assertEquals(london.getGoal(), mapped.getGoal());
+			for (int room = 0; room < london.size(); room++) {
+				assertEquals(london.getDescription(room), mapped.getDescription(room));
+				for (Direction direction : Direction.values()) {
+					assertEquals(london.getExit(room, direction), mapped.getExit(room, direction));
+				}
+			}
+			for (Character c : Character.values()) {
+				assertEquals(london.getPlacement(c), mapped.getPlacement(c));
+				assertEquals(london.getItems(c), mapped.getItems(c));
+			}
+			assertTrue(new Game(mapped).goRoom(Direction.WEST, false).startsWith("You are in the British Library."));
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.wol.bench;
+import com.wol.app.Direction;
+import com.wol.app.Game;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the game loop: moving the player and ticking the clock.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark
+{
+    private Game game;
+
+    /**
+     * Start from a fresh game in St Pancras, and again whenever the game
+     * finished, so goRoom() keeps moving instead of measuring a game over.
+     * A game runs out of time after a few calls, so the check runs before
+     * every call, outside the time measured.
+     */
+    @Setup(Level.Invocation)
+    public void setUp()
+    {
+        if (game == null || game.finished()) {
+            game = new Game();
+        }
+    }
+
+    /**
+     * Go to the British Library and back, two successful goRoom calls.
+     */
+    @Benchmark
+    public String goRoom()
+    {
+        game.goRoom(Direction.WEST, false);
+        return game.goRoom(Direction.EAST, false);
+    }
+
+    /**
+     * Try to go through a missing exit: the clock ticks and all
+     * characters move, but the player stays.
+     */
+    @Benchmark
+    public String tick()
+    {
+        return game.goRoom(Direction.NORTH, false);
+    }
+}
@@ -0,0 +1,35 @@
+package com.wol.bench;
+import com.wol.app.Command;
+import com.wol.app.Parser;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of turning input lines into commands.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark
+{
+    @Param({"go north", "take crisps", "look", "dance wildly"})
+    public String line;
+
+    private Parser parser;
+
+    @Setup
+    public void setUp()
+    {
+        parser = new Parser(new ByteArrayInputStream(new byte[0]));
+    }
+
+    @Benchmark
+    public Command parse()
+    {
+        return parser.parse(line);
+    }
+}
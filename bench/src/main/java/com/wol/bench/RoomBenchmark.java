@@ -0,0 +1,53 @@
+package com.wol.bench;
+import com.wol.app.Character;
+import com.wol.app.Direction;
+import com.wol.app.Game;
+import com.wol.app.Room;
+import com.wol.app.World;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of a single room: describing it and picking a random exit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomBenchmark
+{
+    private Room room;
+
+    /**
+     * Build a room with three exits and three characters.
+     */
+    @Setup
+    public void setUp()
+    {
+        World.Builder builder = new World.Builder();
+        int museum = builder.addRoom("in the British Museum");
+        builder.setExit(museum, Direction.NORTH, builder.addRoom("in the British Library"));
+        builder.setExit(museum, Direction.WEST,  builder.addRoom("on Oxford Street"));
+        builder.setExit(museum, Direction.SOUTH, builder.addRoom("in Covent Garden"));
+        builder.place(Character.LAURA, museum)
+            .place(Character.SALLY, museum)
+            .place(Character.ALEX, museum)
+            .place(Character.PLAYER, museum + 1)
+            .setGoal(museum + 1);
+        room = new Game(builder.build()).getCharacterState(Character.LAURA).getRoom();
+    }
+
+    @Benchmark
+    public String getLongDescription()
+    {
+        return room.getLongDescription();
+    }
+
+    @Benchmark
+    public Room randomExit()
+    {
+        return room.randomExit();
+    }
+}
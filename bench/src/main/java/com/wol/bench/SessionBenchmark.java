@@ -0,0 +1,33 @@
+package com.wol.bench;
+import com.wol.app.Outcome;
+import com.wol.app.Simulation;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmark of whole sessions: building a game and playing random
+ * commands until it ends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionBenchmark
+{
+    private Simulation simulation;
+    private int session;
+
+    @Setup
+    public void setUp()
+    {
+        simulation = new Simulation(Simulation.randomScript(), 100, 0L);
+    }
+
+    @Benchmark
+    public Outcome play()
+    {
+        return simulation.play(session++);
+    }
+}